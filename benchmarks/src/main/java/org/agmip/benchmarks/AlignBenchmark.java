@@ -0,0 +1,125 @@
+package org.agmip.benchmarks;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.agmip.util.AlignedSeries;
+import org.agmip.util.DateIndex;
+import org.agmip.util.DatedSeries;
+
+/**
+ * The RMSE of five observed variables against a year of daily simulated
+ * output, repeated as in a calibration loop: with nested loops over the
+ * rows, with {@link DatedSeries} built from rows, and with the simulated
+ * values already in arrays.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+@State(Scope.Benchmark)
+public class AlignBenchmark {
+    private static final String[] VARIABLES = {"lai", "cwad", "hwad", "gwad", "swad"};
+
+    @Param({"1000"})
+    public int simulations;
+
+    @Param({"50"})
+    public int observations;
+
+    private ArrayList<HashMap<String, String>> observedRows;
+    private ArrayList<HashMap<String, String>> simulatedRows;
+    private DatedSeries observed;
+    private int[] days;
+    private double[][] values;
+    private AlignedSeries aligned;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(1);
+        observedRows = new ArrayList<HashMap<String, String>>();
+        for (int i = 0; i < observations; i++) {
+            HashMap<String, String> row = new HashMap<String, String>();
+            row.put("date", DateIndex.fromEpochDay(4383 + random.nextInt(365)));
+            for (String variable : VARIABLES) {
+                row.put(variable, Integer.toString(random.nextInt(5000)));
+            }
+            observedRows.add(row);
+        }
+        simulatedRows = new ArrayList<HashMap<String, String>>();
+        days = new int[365];
+        values = new double[VARIABLES.length][365];
+        for (int day = 0; day < 365; day++) {
+            HashMap<String, String> row = new HashMap<String, String>();
+            row.put("date", DateIndex.fromEpochDay(4383 + day));
+            days[day] = 4383 + day;
+            for (int v = 0; v < VARIABLES.length; v++) {
+                values[v][day] = random.nextInt(5000);
+                row.put(VARIABLES[v], Double.toString(values[v][day]));
+            }
+            simulatedRows.add(row);
+        }
+        observed = DatedSeries.build(observedRows, "date");
+        aligned = new AlignedSeries(observations);
+    }
+
+    @Benchmark
+    public double nestedLoops() {
+        double acc = 0.0;
+        for (int n = 0; n < simulations; n++) {
+            for (String variable : VARIABLES) {
+                double squares = 0.0;
+                int pairs = 0;
+                for (HashMap<String, String> o : observedRows) {
+                    for (HashMap<String, String> s : simulatedRows) {
+                        if (o.get("date").equals(s.get("date"))) {
+                            double error = Double.parseDouble(s.get(variable)) - Double.parseDouble(o.get(variable));
+                            squares += error * error;
+                            pairs++;
+                        }
+                    }
+                }
+                acc += Math.sqrt(squares / pairs);
+            }
+        }
+        return acc;
+    }
+
+    @Benchmark
+    public double mergeJoinRows() {
+        double acc = 0.0;
+        for (int n = 0; n < simulations; n++) {
+            DatedSeries simulated = DatedSeries.build(simulatedRows, "date");
+            for (String variable : VARIABLES) {
+                acc += observed.align(variable, simulated, aligned).getRmse();
+            }
+        }
+        return acc;
+    }
+
+    @Benchmark
+    public double mergeJoinArrays() {
+        double acc = 0.0;
+        for (int n = 0; n < simulations; n++) {
+            for (int v = 0; v < VARIABLES.length; v++) {
+                acc += observed.align(VARIABLES[v], days, values[v], days.length, aligned).getRmse();
+            }
+        }
+        return acc;
+    }
+}
@@ -0,0 +1,32 @@
+package org.agmip.benchmarks;
+
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks reporting throughput, sampled latency (with
+ * percentiles) and, through the GC profiler, the allocation rate. Any
+ * regular JMH command line option can be passed as well.
+ *
+ * <pre>java -cp target/benchmarks.jar org.agmip.benchmarks.BenchmarkRunner [options] [regexp]</pre>
+ */
+public class BenchmarkRunner {
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        OptionsBuilder options = new OptionsBuilder();
+        options.parent(commandLine);
+        if (commandLine.getIncludes().isEmpty()) {
+            options.include(BenchmarkRunner.class.getPackage().getName() + ".*");
+        }
+        if (commandLine.getBenchModes().isEmpty()) {
+            options.mode(Mode.Throughput).mode(Mode.SampleTime);
+        }
+        options.addProfiler(GCProfiler.class);
+        new Runner(options.build()).run();
+    }
+}
@@ -0,0 +1,59 @@
+package org.agmip.benchmarks;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.agmip.util.BinaryAdapter;
+
+/**
+ * Reading and writing a data package through {@link BinaryAdapter}, with
+ * the same parameters as {@link JSONAdapterBenchmark}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = {"-Xmx2g"})
+@State(Scope.Benchmark)
+public class BinaryAdapterBenchmark {
+    @Param({"10"})
+    public int experiments;
+
+    @Param({"2"})
+    public int stations;
+
+    @Param({"1", "30"})
+    public int years;
+
+    private HashMap<String, Object> pkg;
+    private byte[] binary;
+
+    @Setup
+    public void setup() throws IOException {
+        pkg = DatasetGenerator.dataPackage(experiments, stations, years);
+        binary = BinaryAdapter.toBinary(pkg);
+    }
+
+    @Benchmark
+    public byte[] toBinary() throws IOException {
+        return BinaryAdapter.toBinary(pkg);
+    }
+
+    @Benchmark
+    public HashMap<String, Object> fromBinary() throws IOException {
+        return BinaryAdapter.fromBinary(binary);
+    }
+}
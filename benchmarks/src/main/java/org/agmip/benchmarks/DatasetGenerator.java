@@ -0,0 +1,196 @@
+package org.agmip.benchmarks;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Random;
+
+/**
+ * Builds synthetic ACE datasets shaped like <code>simulation_pp.json</code>
+ * (the sample experiment used by the agmip-core tests), scaled to any number
+ * of experiments, weather stations and years of daily weather.
+ *
+ * Every generator is seeded, so the same arguments always produce the same
+ * dataset.
+ */
+public class DatasetGenerator {
+    private static final int[] DAYS_IN_MONTH = {31, 28, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31};
+    private static final int SOIL_LAYERS = 8;
+
+    private DatasetGenerator() {}
+
+    /**
+     * Builds a data package of <code>experiments</code> experiments sharing
+     * <code>stations</code> weather stations with <code>years</code> years of
+     * daily weather each, and one soil profile for every two stations.
+     */
+    public static HashMap<String, Object> dataPackage(int experiments, int stations, int years) {
+        return dataPackage(experiments, stations, years, true);
+    }
+
+    /**
+     * Builds a data package, leaving out the management events and initial
+     * conditions of the experiments when <code>details</code> is
+     * <code>false</code> (for very large packages).
+     */
+    public static HashMap<String, Object> dataPackage(int experiments, int stations, int years, boolean details) {
+        int profiles = Math.max(1, stations / 2);
+        ArrayList<HashMap<String, Object>> exps = new ArrayList<HashMap<String, Object>>(experiments);
+        ArrayList<HashMap<String, Object>> weathers = new ArrayList<HashMap<String, Object>>(stations);
+        ArrayList<HashMap<String, Object>> soils = new ArrayList<HashMap<String, Object>>(profiles);
+        for (int i = 0; i < stations; i++) {
+            weathers.add(weather("W" + i, years, i));
+        }
+        for (int i = 0; i < profiles; i++) {
+            soils.add(soil("S" + i, i));
+        }
+        for (int i = 0; i < experiments; i++) {
+            if (details) {
+                exps.add(experiment("EXP" + i, "W" + (i % stations), "S" + (i % profiles), i));
+            } else {
+                HashMap<String, Object> exp = new HashMap<String, Object>();
+                exp.put("exname", "EXP" + i);
+                exp.put("wst_id", "W" + (i % stations));
+                exp.put("soil_id", "S" + (i % profiles));
+                exps.add(exp);
+            }
+        }
+        HashMap<String, Object> pkg = new HashMap<String, Object>();
+        pkg.put("experiments", exps);
+        pkg.put("weathers", weathers);
+        pkg.put("soils", soils);
+        return pkg;
+    }
+
+    /**
+     * Builds a single experiment with its weather and soil embedded as
+     * buckets, the shape expected by <code>MapUtil.decompressAll</code>.
+     */
+    public static HashMap<String, Object> flatExperiment(int years) {
+        HashMap<String, Object> exp = experiment("EXP0", "W0", "S0", 0);
+        exp.put("weather", weather("W0", years, 0));
+        exp.put("soil", soil("S0", 0));
+        return exp;
+    }
+
+    /**
+     * Builds a weather station starting on January 1st 1982. Every row holds
+     * all variables.
+     */
+    public static HashMap<String, Object> weather(String wstId, int years, long seed) {
+        Random random = new Random(seed);
+        HashMap<String, Object> weather = new HashMap<String, Object>();
+        weather.put("wst_id", wstId);
+        weather.put("wst_name", "Station " + wstId);
+        weather.put("wst_lat", "29.630");
+        weather.put("wst_long", "-82.370");
+        weather.put("elev", "40");
+        weather.put("tav", "21.0");
+        weather.put("tamp", "14.3");
+        ArrayList<HashMap<String, String>> daily = new ArrayList<HashMap<String, String>>(years * 365);
+        for (int y = 0; y < years; y++) {
+            for (int m = 0; m < 12; m++) {
+                for (int d = 1; d <= DAYS_IN_MONTH[m]; d++) {
+                    double season = Math.cos((m - 6) * Math.PI / 6.0);
+                    double tmax = 26.0 + 6.0 * season + random.nextGaussian() * 2.0;
+                    HashMap<String, String> row = new HashMap<String, String>();
+                    row.put("w_date", String.format("%04d%02d%02d", 1982 + y, m + 1, d));
+                    row.put("srad", oneDecimal(15.0 + 6.0 * season + random.nextDouble() * 4.0));
+                    row.put("tmax", oneDecimal(tmax));
+                    row.put("tmin", oneDecimal(tmax - 8.0 - random.nextDouble() * 4.0));
+                    row.put("rain", oneDecimal(random.nextInt(4) == 0 ? random.nextDouble() * 30.0 : 0.0));
+                    row.put("wind", oneDecimal(100.0 + random.nextDouble() * 150.0));
+                    daily.add(row);
+                }
+            }
+        }
+        weather.put("dailyWeather", daily);
+        return weather;
+    }
+
+    /**
+     * Builds a soil profile with eight layers down to 180 cm.
+     */
+    public static HashMap<String, Object> soil(String soilId, long seed) {
+        Random random = new Random(seed);
+        HashMap<String, Object> soil = new HashMap<String, Object>();
+        soil.put("soil_id", soilId);
+        soil.put("soil_name", "Millhopper Fine Sand");
+        soil.put("sldp", "180");
+        soil.put("salb", "0.18");
+        soil.put("slro", "60");
+        ArrayList<HashMap<String, String>> layers = new ArrayList<HashMap<String, String>>(SOIL_LAYERS);
+        int[] bottoms = {5, 15, 30, 45, 60, 90, 120, 180};
+        for (int i = 0; i < SOIL_LAYERS; i++) {
+            HashMap<String, String> layer = new HashMap<String, String>();
+            layer.put("sllb", Integer.toString(bottoms[i]));
+            layer.put("slll", threeDecimals(0.02 + random.nextDouble() * 0.05));
+            layer.put("sldul", threeDecimals(0.08 + random.nextDouble() * 0.05));
+            layer.put("slsat", threeDecimals(0.23 + random.nextDouble() * 0.05));
+            layer.put("sloc", threeDecimals(random.nextDouble()));
+            layer.put("slbdm", "1.36");
+            layers.add(layer);
+        }
+        soil.put("soilLayer", layers);
+        return soil;
+    }
+
+    /**
+     * Builds an experiment referencing a weather station and soil profile,
+     * with a planting, two irrigations, a fertilizer and a harvest event.
+     */
+    public static HashMap<String, Object> experiment(String exname, String wstId, String soilId, long seed) {
+        Random random = new Random(seed);
+        HashMap<String, Object> exp = new HashMap<String, Object>();
+        exp.put("exname", exname);
+        exp.put("local_name", "NIT X IRR, GAINESVILLE 2N*3I");
+        exp.put("institutes", "UNIVERSITY OF FLORIDA, GAINESVILLE, FL, USA");
+        exp.put("fl_lat", "29.63");
+        exp.put("fl_long", "-82.37");
+        exp.put("wst_id", wstId);
+        exp.put("soil_id", soilId);
+
+        ArrayList<HashMap<String, String>> events = new ArrayList<HashMap<String, String>>();
+        int day = 1 + random.nextInt(20);
+        events.add(event("planting", String.format("198202%02d", day), "crid", "MAZ", "plpop", "7.2"));
+        events.add(event("irrigation", String.format("198203%02d", day), "irop", "IR001", "irval", "13"));
+        events.add(event("fertilizer", String.format("198203%02d", day + 5), "fecd", "FE005", "feamn", "60"));
+        events.add(event("irrigation", String.format("198204%02d", day), "irop", "IR001", "irval", "25"));
+        events.add(event("harvest", String.format("198206%02d", day), "harm", "HM001", "hastg", "GS008"));
+        HashMap<String, Object> management = new HashMap<String, Object>();
+        management.put("events", events);
+        exp.put("management", management);
+
+        HashMap<String, Object> initial = new HashMap<String, Object>();
+        initial.put("icdat", "19820225");
+        initial.put("icrt", "100");
+        ArrayList<HashMap<String, String>> layers = new ArrayList<HashMap<String, String>>();
+        for (int bottom : new int[] {5, 15, 30, 45, 60}) {
+            HashMap<String, String> layer = new HashMap<String, String>();
+            layer.put("icbl", Integer.toString(bottom));
+            layer.put("ich2o", threeDecimals(0.05 + random.nextDouble() * 0.1));
+            layer.put("icnh4", oneDecimal(random.nextDouble() * 2.0));
+            layers.add(layer);
+        }
+        initial.put("soilLayer", layers);
+        exp.put("initial_condition", initial);
+        return exp;
+    }
+
+    private static HashMap<String, String> event(String type, String date, String... values) {
+        HashMap<String, String> event = new HashMap<String, String>();
+        event.put("event", type);
+        event.put("date", date);
+        for (int i = 0; i + 1 < values.length; i += 2) {
+            event.put(values[i], values[i + 1]);
+        }
+        return event;
+    }
+
+    private static String oneDecimal(double value) {
+        return Double.toString(Math.round(value * 10.0) / 10.0);
+    }
+
+    private static String threeDecimals(double value) {
+        return Double.toString(Math.round(value * 1000.0) / 1000.0);
+    }
+}
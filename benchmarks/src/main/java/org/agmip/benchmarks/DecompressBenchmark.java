@@ -0,0 +1,76 @@
+package org.agmip.benchmarks;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.agmip.util.MapUtil;
+
+/**
+ * {@link MapUtil#decompressAll(java.util.Map)},
+ * {@link MapUtil#flattenGlobals(java.util.Map)} and single value lookups,
+ * through copies and through views, on a single experiment with its weather
+ * and soil embedded.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DecompressBenchmark {
+    @Param({"1", "30"})
+    public int years;
+
+    private static final HashSet<String> EXTRACTED = new HashSet<String>(Arrays.asList("exname", "wst_id", "soil_id", "tav", "salb"));
+
+    private HashMap<String, Object> experiment;
+
+    @Setup
+    public void setup() {
+        experiment = DatasetGenerator.flatExperiment(years);
+    }
+
+    @Benchmark
+    public HashMap<String, Object> decompressAll() {
+        return MapUtil.decompressAll(experiment);
+    }
+
+    @Benchmark
+    public HashMap<String, String> flattenGlobals() {
+        return MapUtil.flattenGlobals(experiment);
+    }
+
+    @Benchmark
+    public HashMap<String, String> extract() {
+        return MapUtil.extract(experiment, EXTRACTED);
+    }
+
+    @Benchmark
+    public String bucketLookup() {
+        return MapUtil.getBucket(experiment, "weather", true).getValues().get("wst_id");
+    }
+
+    @Benchmark
+    public String bucketViewLookup() {
+        return MapUtil.getBucketView(experiment, "weather").get("wst_id");
+    }
+
+    @Benchmark
+    public String globalsViewLookup() {
+        return MapUtil.getGlobalsView(experiment).get("tav");
+    }
+}
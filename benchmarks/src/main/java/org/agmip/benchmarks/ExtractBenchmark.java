@@ -0,0 +1,83 @@
+package org.agmip.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.agmip.util.ExtractedTable;
+import org.agmip.util.Extractor;
+import org.agmip.util.MapUtil;
+
+/**
+ * Extracting the same variables from every experiment of a flattened
+ * package, with {@link MapUtil#extract(java.util.Map, java.util.Set)} and
+ * with an {@link Extractor}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+@State(Scope.Benchmark)
+public class ExtractBenchmark {
+    private static final LinkedHashSet<String> KEYS = new LinkedHashSet<String>(Arrays.asList(
+        "exname", "wst_id", "soil_id", "fl_lat", "fl_long", "tav", "tamp", "salb", "sldp", "icdat"));
+
+    @Param({"100000"})
+    public int experiments;
+
+    @Param({"0"})
+    public int threads;
+
+    private ArrayList<HashMap<String, Object>> flat;
+    private Extractor extractor;
+    private ExecutorService executor;
+
+    @Setup
+    public void setup() {
+        flat = MapUtil.flatPack(DatasetGenerator.dataPackage(experiments, Math.max(1, experiments / 10), 0));
+        extractor = new Extractor(KEYS);
+        executor = Executors.newFixedThreadPool(threads > 0 ? threads : Runtime.getRuntime().availableProcessors());
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    @Benchmark
+    public ArrayList<HashMap<String, String>> extract() {
+        ArrayList<HashMap<String, String>> acc = new ArrayList<HashMap<String, String>>(flat.size());
+        for (HashMap<String, Object> experiment : flat) {
+            acc.add(MapUtil.extract(experiment, KEYS));
+        }
+        return acc;
+    }
+
+    @Benchmark
+    public ExtractedTable extractor() {
+        return extractor.extractAll(flat);
+    }
+
+    @Benchmark
+    public ExtractedTable extractorParallel() throws InterruptedException {
+        return extractor.extractAll(flat, executor);
+    }
+}
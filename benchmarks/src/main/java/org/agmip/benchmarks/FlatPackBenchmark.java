@@ -0,0 +1,54 @@
+package org.agmip.benchmarks;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.agmip.util.MapUtil;
+
+/**
+ * Scaling of {@link MapUtil#flatPack(HashMap)} and
+ * {@link MapUtil#bundle(ArrayList)} with the number of experiments in a
+ * package. Every ten experiments share a weather station and every twenty
+ * share a soil profile. Only the IDs matter here, so the stations carry no
+ * daily weather and the experiments no management.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+@State(Scope.Benchmark)
+public class FlatPackBenchmark {
+    @Param({"100", "1000", "10000", "100000", "1000000"})
+    public int experiments;
+
+    private HashMap<String, Object> pkg;
+
+    @Setup
+    public void setup() {
+        pkg = DatasetGenerator.dataPackage(experiments, Math.max(1, experiments / 10), 0, false);
+    }
+
+    @Benchmark
+    public ArrayList<HashMap<String, Object>> flatPack() {
+        return MapUtil.flatPack(pkg);
+    }
+
+    @Benchmark
+    public HashMap<String, ArrayList<HashMap<String, Object>>> flatPackAndBundle() {
+        return MapUtil.bundle(MapUtil.flatPack(pkg));
+    }
+}
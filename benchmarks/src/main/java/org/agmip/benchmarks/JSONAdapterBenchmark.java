@@ -0,0 +1,94 @@
+package org.agmip.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import org.agmip.core.types.DatasetSink;
+import org.agmip.util.JSONAdapter;
+
+/**
+ * Reading and writing a data package through {@link JSONAdapter}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = {"-Xmx2g"})
+@State(Scope.Benchmark)
+public class JSONAdapterBenchmark {
+    @Param({"10"})
+    public int experiments;
+
+    @Param({"2"})
+    public int stations;
+
+    @Param({"1", "30"})
+    public int years;
+
+    private HashMap<String, Object> pkg;
+    private String json;
+    private byte[] bytes;
+    private File file;
+
+    @Setup
+    public void setup() throws IOException {
+        pkg = DatasetGenerator.dataPackage(experiments, stations, years);
+        json = JSONAdapter.toJSON(pkg);
+        bytes = json.getBytes("UTF-8");
+        file = File.createTempFile("agmip-bench", ".json");
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(bytes);
+        } finally {
+            out.close();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Benchmark
+    public String toJSON() throws IOException {
+        return JSONAdapter.toJSON(pkg);
+    }
+
+    @Benchmark
+    public HashMap<String, Object> fromJSON() throws IOException {
+        return JSONAdapter.fromJSON(json);
+    }
+
+    @Benchmark
+    public HashMap<String, Object> fromJSONFile() throws IOException {
+        return JSONAdapter.fromJSONFile(file.getPath());
+    }
+
+    @Benchmark
+    public HashMap<String, Object> streamJSON(final Blackhole bh) throws IOException {
+        return JSONAdapter.streamJSON(new ByteArrayInputStream(bytes), new DatasetSink() {
+            public void accept(String content, HashMap<String, Object> entry) {
+                bh.consume(entry);
+            }
+        });
+    }
+}
@@ -0,0 +1,70 @@
+package org.agmip.benchmarks;
+
+import java.util.HashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.agmip.util.MapUtil;
+
+/**
+ * Sequential and concurrent {@link MapUtil#decompressPackage(java.util.Map)}
+ * over a whole data package. The pool has one thread per available
+ * processor unless <code>threads</code> is set.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = {"-Xmx2g"})
+@State(Scope.Benchmark)
+public class PackageDecompressBenchmark {
+    @Param({"1000"})
+    public int experiments;
+
+    @Param({"50"})
+    public int stations;
+
+    @Param({"10"})
+    public int years;
+
+    @Param({"0"})
+    public int threads;
+
+    private HashMap<String, Object> pkg;
+    private ExecutorService executor;
+
+    @Setup
+    public void setup() {
+        pkg = DatasetGenerator.dataPackage(experiments, stations, years);
+        executor = Executors.newFixedThreadPool(threads > 0 ? threads : Runtime.getRuntime().availableProcessors());
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    @Benchmark
+    public HashMap<String, Object> sequential() {
+        return MapUtil.decompressPackage(pkg);
+    }
+
+    @Benchmark
+    public HashMap<String, Object> concurrent() throws InterruptedException {
+        return MapUtil.decompressPackage(pkg, executor);
+    }
+}
@@ -0,0 +1,48 @@
+package org.agmip.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import org.agmip.util.Helpers;
+
+/**
+ * Compares {@link Helpers#parseDouble(String)} with
+ * {@link Helpers#parseDoubleValue(String)} on typical weather and soil
+ * values. Run with <code>-prof gc</code> to see the allocation rate.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParseDoubleBenchmark {
+    private static final String[] VALUES = {"23.4", "11.2", "0", "12.5", "-99", "1,234.5", "0.125", "19820101"};
+
+    @Benchmark
+    @OperationsPerInvocation(8)
+    public void parseDouble(Blackhole bh) {
+        for (String value : VALUES) {
+            bh.consume(Helpers.parseDouble(value));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(8)
+    public void parseDoubleValue(Blackhole bh) {
+        for (String value : VALUES) {
+            bh.consume(Helpers.parseDoubleValue(value));
+        }
+    }
+}
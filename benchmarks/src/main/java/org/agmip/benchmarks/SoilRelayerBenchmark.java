@@ -0,0 +1,118 @@
+package org.agmip.benchmarks;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.agmip.util.MapUtil;
+import org.agmip.util.SoilProfile;
+
+/**
+ * Re-layering three soil variables onto a model grid for every soil: by
+ * iterating the decompressed layers, and with {@link SoilProfile}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+@State(Scope.Benchmark)
+public class SoilRelayerBenchmark {
+    private static final String[] VARIABLES = {"slll", "sldul", "slbdm"};
+    private static final double[] GRID = {5, 15, 30, 45, 60, 90, 120, 150, 180, 210};
+
+    @Param({"10000"})
+    public int soils;
+
+    private ArrayList<HashMap<String, Object>> raw;
+    private ArrayList<SoilProfile> profiles;
+    private double[] out;
+
+    @Setup
+    public void setup() {
+        raw = new ArrayList<HashMap<String, Object>>();
+        profiles = new ArrayList<SoilProfile>();
+        for (int i = 0; i < soils; i++) {
+            HashMap<String, Object> soil = DatasetGenerator.soil("S" + i, i);
+            raw.add(soil);
+            profiles.add(SoilProfile.forSoil(soil, true));
+        }
+        out = new double[GRID.length];
+    }
+
+    @Benchmark
+    public double naive() {
+        double acc = 0.0;
+        for (HashMap<String, Object> soil : raw) {
+            ArrayList<HashMap<String, String>> layers = new MapUtil.BucketEntry(soil).getDataList();
+            for (String variable : VARIABLES) {
+                double top = 0.0;
+                for (double bottom : GRID) {
+                    double weighted = 0.0;
+                    double thickness = 0.0;
+                    double layerTop = 0.0;
+                    double last = Double.NaN;
+                    for (HashMap<String, String> layer : layers) {
+                        double layerBottom = Double.parseDouble(layer.get("sllb"));
+                        last = Double.parseDouble(layer.get(variable));
+                        double overlap = Math.min(layerBottom, bottom) - Math.max(layerTop, top);
+                        if (overlap > 0.0) {
+                            weighted += overlap * last;
+                            thickness += overlap;
+                        }
+                        layerTop = layerBottom;
+                    }
+                    if (bottom > layerTop) {
+                        double below = bottom - Math.max(top, layerTop);
+                        weighted += below * last;
+                        thickness += below;
+                    }
+                    acc += weighted / thickness;
+                    top = bottom;
+                }
+            }
+        }
+        return acc;
+    }
+
+    @Benchmark
+    public double profile() {
+        double acc = 0.0;
+        for (HashMap<String, Object> soil : raw) {
+            acc += relayer(SoilProfile.forSoil(soil, true));
+        }
+        return acc;
+    }
+
+    @Benchmark
+    public double profileReused() {
+        double acc = 0.0;
+        for (SoilProfile profile : profiles) {
+            acc += relayer(profile);
+        }
+        return acc;
+    }
+
+    private double relayer(SoilProfile profile) {
+        double acc = 0.0;
+        for (String variable : VARIABLES) {
+            profile.relayer(variable, GRID, out);
+            for (double value : out) {
+                acc += value;
+            }
+        }
+        return acc;
+    }
+}
@@ -0,0 +1,76 @@
+package org.agmip.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.agmip.core.types.TimeseriesComparator;
+import org.agmip.core.types.TimeseriesSorter;
+
+/**
+ * Sorting daily weather by <code>w_date</code> with
+ * {@link TimeseriesComparator} and {@link TimeseriesSorter}, from shuffled
+ * and from already sorted input.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TimeseriesComparatorBenchmark {
+    @Param({"1", "30"})
+    public int years;
+
+    protected ArrayList<HashMap<String, String>> sorted;
+    protected ArrayList<HashMap<String, String>> shuffled;
+
+    @Setup
+    public void setup() {
+        sorted = (ArrayList<HashMap<String, String>>) DatasetGenerator.weather("W0", years, 0).get("dailyWeather");
+        shuffled = new ArrayList<HashMap<String, String>>(sorted);
+        Collections.shuffle(shuffled, new Random(0));
+    }
+
+    @Benchmark
+    public ArrayList<HashMap<String, String>> sortShuffled() {
+        ArrayList<HashMap<String, String>> rows = new ArrayList<HashMap<String, String>>(shuffled);
+        Collections.sort(rows, new TimeseriesComparator("w_date"));
+        return rows;
+    }
+
+    @Benchmark
+    public ArrayList<HashMap<String, String>> sortSorted() {
+        ArrayList<HashMap<String, String>> rows = new ArrayList<HashMap<String, String>>(sorted);
+        Collections.sort(rows, new TimeseriesComparator("w_date"));
+        return rows;
+    }
+
+    @Benchmark
+    public ArrayList<HashMap<String, String>> sorterShuffled() {
+        ArrayList<HashMap<String, String>> rows = new ArrayList<HashMap<String, String>>(shuffled);
+        TimeseriesSorter.sort(rows, "w_date");
+        return rows;
+    }
+
+    @Benchmark
+    public ArrayList<HashMap<String, String>> sorterSorted() {
+        ArrayList<HashMap<String, String>> rows = new ArrayList<HashMap<String, String>>(sorted);
+        TimeseriesSorter.sort(rows, "w_date");
+        return rows;
+    }
+}
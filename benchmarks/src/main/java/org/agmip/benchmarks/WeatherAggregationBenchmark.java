@@ -0,0 +1,141 @@
+package org.agmip.benchmarks;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.agmip.util.MapUtil;
+import org.agmip.util.WeatherSeries;
+
+/**
+ * Monthly means of <code>tmax</code>, plus the growing degree days and rain
+ * of every April to September season, for a set of weather stations: by
+ * iterating the decompressed rows, and with {@link WeatherSeries}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+@State(Scope.Benchmark)
+public class WeatherAggregationBenchmark {
+    private static final WeatherSeries.Aggregation<double[]> SEASONS = new WeatherSeries.Aggregation<double[]>() {
+        public double[] apply(WeatherSeries series) {
+            return aggregate(series);
+        }
+    };
+
+    @Param({"30"})
+    public int years;
+
+    @Param({"20"})
+    public int stations;
+
+    @Param({"0"})
+    public int threads;
+
+    private ArrayList<HashMap<String, Object>> weathers;
+    private ArrayList<WeatherSeries> series;
+    private ExecutorService executor;
+
+    @Setup
+    public void setup() {
+        weathers = new ArrayList<HashMap<String, Object>>();
+        series = new ArrayList<WeatherSeries>();
+        for (int i = 0; i < stations; i++) {
+            HashMap<String, Object> weather = DatasetGenerator.weather("ST" + i, years, i);
+            weathers.add(weather);
+            series.add(WeatherSeries.of(weather, true));
+        }
+        executor = Executors.newFixedThreadPool(threads > 0 ? threads : Runtime.getRuntime().availableProcessors());
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    @Benchmark
+    public List<double[]> naive() {
+        ArrayList<double[]> acc = new ArrayList<double[]>();
+        for (HashMap<String, Object> weather : weathers) {
+            ArrayList<HashMap<String, String>> rows = new MapUtil.BucketEntry(weather).getDataList();
+            double[] result = new double[years * 12 + years * 2];
+            int[] counts = new int[years * 12];
+            for (HashMap<String, String> row : rows) {
+                String date = row.get("w_date");
+                int year = Integer.parseInt(date.substring(0, 4)) - 1982;
+                int month = Integer.parseInt(date.substring(4, 6)) - 1;
+                double tmax = Double.parseDouble(row.get("tmax"));
+                result[year * 12 + month] += tmax;
+                counts[year * 12 + month]++;
+                if (month >= 3 && month <= 8) {
+                    double tmin = Double.parseDouble(row.get("tmin"));
+                    double thermal = (Math.min(tmax, 34.0) + Math.max(tmin, 8.0)) / 2.0 - 8.0;
+                    result[years * 12 + year * 2] += Math.max(0.0, thermal);
+                    result[years * 12 + year * 2 + 1] += Double.parseDouble(row.get("rain"));
+                }
+            }
+            for (int i = 0; i < counts.length; i++) {
+                result[i] /= counts[i];
+            }
+            acc.add(result);
+        }
+        return acc;
+    }
+
+    @Benchmark
+    public List<double[]> series() {
+        ArrayList<double[]> acc = new ArrayList<double[]>();
+        for (HashMap<String, Object> weather : weathers) {
+            acc.add(aggregate(WeatherSeries.of(weather, true)));
+        }
+        return acc;
+    }
+
+    @Benchmark
+    public List<double[]> seriesReused() {
+        ArrayList<double[]> acc = new ArrayList<double[]>();
+        for (WeatherSeries s : series) {
+            acc.add(aggregate(s));
+        }
+        return acc;
+    }
+
+    @Benchmark
+    public List<double[]> seriesParallel() throws InterruptedException {
+        return WeatherSeries.aggregateAll(weathers, true, SEASONS, executor);
+    }
+
+    private static double[] aggregate(WeatherSeries series) {
+        List<WeatherSeries.Summary> months = series.monthly("tmax");
+        int years = months.size() / 12;
+        double[] result = new double[months.size() + years * 2];
+        for (int i = 0; i < months.size(); i++) {
+            result[i] = months.get(i).getMean();
+        }
+        for (int y = 0; y < years; y++) {
+            String from = (1982 + y) + "0401";
+            String to = (1982 + y) + "0930";
+            result[months.size() + y * 2] = series.growingDegreeDays(from, to, 8.0, 34.0);
+            result[months.size() + y * 2 + 1] = series.summarize("rain", from, to).getSum();
+        }
+        return result;
+    }
+}
@@ -1,5 +1,5 @@
 package org.agmip.core;
 
 public enum ModelEnum {
-    JSON,APSIM,DSSAT
+    JSON,APSIM,DSSAT,BINARY
 }
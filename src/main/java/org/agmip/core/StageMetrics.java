@@ -0,0 +1,101 @@
+package org.agmip.core;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The counters of a stage of a {@link TranslationExecutor} run. They are
+ * updated by the threads of the stage while the run goes on.
+ *
+ * @since 1.2
+ */
+public class StageMetrics {
+    private final String name;
+    private final int threads;
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong produced = new AtomicLong();
+    private final AtomicLong busyNanos = new AtomicLong();
+    private final AtomicLong blockedNanos = new AtomicLong();
+
+    StageMetrics(String name, int threads) {
+        this.name = name;
+        this.threads = threads;
+    }
+
+    /**
+     * Returns the name of the stage (<code>read</code>,
+     * <code>transform</code> or <code>write DSSAT</code>...).
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the number of threads of the stage.
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Returns the number of items the stage processed successfully.
+     */
+    public long getProcessed() {
+        return processed.get();
+    }
+
+    /**
+     * Returns the number of items the stage failed to process.
+     */
+    public long getFailed() {
+        return failed.get();
+    }
+
+    /**
+     * Returns the number of items the stage handed to the next one.
+     */
+    public long getProduced() {
+        return produced.get();
+    }
+
+    /**
+     * Returns the time spent processing items, summed over the threads of
+     * the stage.
+     */
+    public long getBusyTime(TimeUnit unit) {
+        return unit.convert(busyNanos.get(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the time spent waiting for room in the queue of the next
+     * stage, summed over the threads of the stage. A stage which is often
+     * blocked is faster than the stage after it.
+     */
+    public long getBlockedTime(TimeUnit unit) {
+        return unit.convert(blockedNanos.get(), TimeUnit.NANOSECONDS);
+    }
+
+    void recordProcessed(long nanos) {
+        processed.incrementAndGet();
+        busyNanos.addAndGet(nanos);
+    }
+
+    void recordFailed(long nanos) {
+        failed.incrementAndGet();
+        busyNanos.addAndGet(nanos);
+    }
+
+    void recordProduced(long blocked) {
+        produced.incrementAndGet();
+        blockedNanos.addAndGet(blocked);
+    }
+
+    @Override
+    public String toString() {
+        return "StageMetrics{name=" + name + ", threads=" + threads + ", processed=" + getProcessed()
+            + ", failed=" + getFailed() + ", produced=" + getProduced()
+            + ", busyMs=" + getBusyTime(TimeUnit.MILLISECONDS)
+            + ", blockedMs=" + getBlockedTime(TimeUnit.MILLISECONDS) + "}";
+    }
+}
@@ -0,0 +1,368 @@
+package org.agmip.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.agmip.core.types.TranslatorInput;
+import org.agmip.core.types.TranslatorOutput;
+import org.agmip.util.MapUtil;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Translates many input files to one or more models as a pipeline.
+ *
+ * Three stages run on their own threads and hand their work over through
+ * bounded queues, so a slow stage holds the previous ones back instead of
+ * letting data pile up in memory:
+ * <ol>
+ * <li><b>read</b>: {@link TranslatorInput#readFile(String)} on each
+ * file;</li>
+ * <li><b>transform</b>: data packages are flattened with
+ * {@link MapUtil#flatPack(HashMap)} into experiments holding their weather
+ * and soil, and every experiment (flattened or read on its own) is
+ * decompressed with {@link MapUtil#decompressAll(Map)}. Data packages can
+ * also be decompressed as a whole, see {@link #setFlatten(boolean)};</li>
+ * <li><b>write</b>: {@link TranslatorOutput#writeFile(String, Map)} for
+ * every output, in the order they were added.</li>
+ * </ol>
+ *
+ * Output translators therefore always receive decompressed data: a single
+ * experiment with its <code>weather</code> and <code>soil</code> buckets,
+ * or a whole package when flattening is turned off.
+ *
+ * <pre>
+ * TranslationReport report = new TranslationExecutor(new JSONInput())
+ *     .addOutput(ModelEnum.DSSAT, new DssatOutput(), "out/dssat")
+ *     .setTransformers(4)
+ *     .setWriters(4)
+ *     .run(files);
+ * </pre>
+ *
+ * A failure, even an {@link Error} thrown by a translator, only drops the
+ * file (or experiment) involved; it is logged and listed in the
+ * {@link TranslationReport}, and the threads of the stage keep going. When
+ * a package fails part way through the transform stage, the experiments
+ * already handed to the writers are still written. Translators are shared
+ * by the threads of their stage, so they must be thread safe when the
+ * stage has more than one thread.
+ *
+ * @since 1.2
+ */
+@SuppressWarnings("unchecked")
+public class TranslationExecutor {
+    private static final Logger LOG = LoggerFactory.getLogger(TranslationExecutor.class);
+    private static final Item END_OF_STREAM = new Item(null, null);
+
+    private final TranslatorInput input;
+    private final LinkedHashMap<ModelEnum, Output> outputs = new LinkedHashMap<ModelEnum, Output>();
+    private int readers = 1;
+    private int transformers = 1;
+    private int writers = 1;
+    private int queueCapacity = 16;
+    private boolean flatten = true;
+
+    public TranslationExecutor(TranslatorInput input) {
+        this.input = input;
+    }
+
+    /**
+     * Adds (or replaces) the translator of a model.
+     *
+     * @param model the model, which names the write stage
+     * @param output the translator
+     * @param outputDirectory where the translator writes
+     */
+    public TranslationExecutor addOutput(ModelEnum model, TranslatorOutput output, String outputDirectory) {
+        outputs.put(model, new Output(output, outputDirectory));
+        return this;
+    }
+
+    /**
+     * Sets the number of threads reading files (1 by default).
+     */
+    public TranslationExecutor setReaders(int readers) {
+        this.readers = checkPositive("readers", readers);
+        return this;
+    }
+
+    /**
+     * Sets the number of threads flattening or decompressing the data (1 by
+     * default).
+     */
+    public TranslationExecutor setTransformers(int transformers) {
+        this.transformers = checkPositive("transformers", transformers);
+        return this;
+    }
+
+    /**
+     * Sets the number of threads writing (1 by default).
+     */
+    public TranslationExecutor setWriters(int writers) {
+        this.writers = checkPositive("writers", writers);
+        return this;
+    }
+
+    /**
+     * Sets the size of the queues between the stages (16 by default): the
+     * number of files waiting to be transformed, and of experiments waiting
+     * to be written.
+     */
+    public TranslationExecutor setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = checkPositive("queueCapacity", queueCapacity);
+        return this;
+    }
+
+    /**
+     * Sets whether data packages are flattened into experiments, which are
+     * written one at a time (the default), or decompressed and written as a
+     * whole package.
+     */
+    public TranslationExecutor setFlatten(boolean flatten) {
+        this.flatten = flatten;
+        return this;
+    }
+
+    /**
+     * Translates files and waits until they are all written.
+     *
+     * @param files the files to read
+     * @return the metrics and failures of the run
+     * @throws IllegalStateException if no output was added
+     * @throws InterruptedException if interrupted while waiting, in which
+     *         case the pipeline is stopped
+     */
+    public TranslationReport run(final List<String> files) throws InterruptedException {
+        if (outputs.isEmpty()) {
+            throw new IllegalStateException("No output translator was added");
+        }
+        long start = System.nanoTime();
+        final List<TranslationReport.Failure> failures = Collections.synchronizedList(new ArrayList<TranslationReport.Failure>());
+        final StageMetrics read = new StageMetrics("read", readers);
+        final StageMetrics transform = new StageMetrics("transform", transformers);
+        final ArrayList<Output> targets = new ArrayList<Output>(outputs.values());
+        final StageMetrics[] writes = new StageMetrics[targets.size()];
+        int w = 0;
+        for (ModelEnum model : outputs.keySet()) {
+            writes[w++] = new StageMetrics("write " + model, writers);
+        }
+
+        final BlockingQueue<Item> toTransform = new ArrayBlockingQueue<Item>(queueCapacity);
+        final BlockingQueue<Item> toWrite = new ArrayBlockingQueue<Item>(queueCapacity);
+        final AtomicInteger nextFile = new AtomicInteger();
+        final AtomicInteger readersLeft = new AtomicInteger(readers);
+        final AtomicInteger transformersLeft = new AtomicInteger(transformers);
+        ArrayList<Thread> threads = new ArrayList<Thread>();
+
+        for (int i = 0; i < readers; i++) {
+            threads.add(new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        int next;
+                        while ((next = nextFile.getAndIncrement()) < files.size()) {
+                            String file = files.get(next);
+                            long t = System.nanoTime();
+                            Map data;
+                            try {
+                                data = input.readFile(file);
+                                if (data == null) {
+                                    throw new IllegalStateException("The input translator returned no data");
+                                }
+                            } catch (Throwable ex) {
+                                read.recordFailed(System.nanoTime() - t);
+                                fail(failures, file, read, ex);
+                                continue;
+                            }
+                            read.recordProcessed(System.nanoTime() - t);
+                            handOver(toTransform, new Item(file, data), read);
+                        }
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        if (readersLeft.decrementAndGet() == 0) {
+                            endStream(toTransform, transformers);
+                        }
+                    }
+                }
+            }, "agmip-read-" + i));
+        }
+
+        for (int i = 0; i < transformers; i++) {
+            threads.add(new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        Item item;
+                        while ((item = toTransform.take()) != END_OF_STREAM) {
+                            // Only the time spent decompressing counts as busy,
+                            // not the time waiting for the writers.
+                            long busy = 0;
+                            long t = System.nanoTime();
+                            try {
+                                Iterator<HashMap<String, Object>> entries = transform(item.data);
+                                while (entries.hasNext()) {
+                                    HashMap<String, Object> entry = entries.next();
+                                    busy += System.nanoTime() - t;
+                                    handOver(toWrite, new Item(item.file, entry), transform);
+                                    t = System.nanoTime();
+                                }
+                            } catch (InterruptedException ex) {
+                                throw ex;
+                            } catch (Throwable ex) {
+                                transform.recordFailed(busy + System.nanoTime() - t);
+                                fail(failures, item.file, transform, ex);
+                                continue;
+                            }
+                            transform.recordProcessed(busy + System.nanoTime() - t);
+                        }
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        if (transformersLeft.decrementAndGet() == 0) {
+                            endStream(toWrite, writers);
+                        }
+                    }
+                }
+            }, "agmip-transform-" + i));
+        }
+
+        for (int i = 0; i < writers; i++) {
+            threads.add(new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        Item item;
+                        while ((item = toWrite.take()) != END_OF_STREAM) {
+                            for (int o = 0; o < targets.size(); o++) {
+                                Output output = targets.get(o);
+                                long t = System.nanoTime();
+                                try {
+                                    output.translator.writeFile(output.directory, item.data);
+                                    writes[o].recordProcessed(System.nanoTime() - t);
+                                } catch (Throwable ex) {
+                                    writes[o].recordFailed(System.nanoTime() - t);
+                                    fail(failures, item.file, writes[o], ex);
+                                }
+                            }
+                        }
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }, "agmip-write-" + i));
+        }
+
+        for (Thread thread : threads) {
+            thread.setDaemon(true);
+            thread.start();
+        }
+        try {
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        } catch (InterruptedException ex) {
+            for (Thread thread : threads) {
+                thread.interrupt();
+            }
+            throw ex;
+        }
+
+        ArrayList<StageMetrics> stages = new ArrayList<StageMetrics>();
+        stages.add(read);
+        stages.add(transform);
+        Collections.addAll(stages, writes);
+        TranslationReport report = new TranslationReport(stages, failures, System.nanoTime() - start);
+        LOG.debug("{}", report);
+        return report;
+    }
+
+    /**
+     * Returns the decompressed entries to write. Flattened experiments are
+     * decompressed one at a time as they are requested, so only those
+     * waiting in the queue are ever held decompressed.
+     */
+    private Iterator<HashMap<String, Object>> transform(Map data) {
+        HashMap<String, Object> map = (data instanceof HashMap) ? (HashMap<String, Object>) data : new HashMap<String, Object>(data);
+        if (map.get("experiments") instanceof List) {
+            if (flatten) {
+                final Iterator<HashMap<String, Object>> experiments = MapUtil.flatPackIterator(map);
+                return new Iterator<HashMap<String, Object>>() {
+                    public boolean hasNext() {
+                        return experiments.hasNext();
+                    }
+
+                    public HashMap<String, Object> next() {
+                        return MapUtil.decompressAll(experiments.next());
+                    }
+
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+            return Collections.singletonList(MapUtil.decompressPackage(map)).iterator();
+        }
+        return Collections.singletonList(MapUtil.decompressAll(map)).iterator();
+    }
+
+    private static void handOver(BlockingQueue<Item> queue, Item item, StageMetrics stage) throws InterruptedException {
+        long t = System.nanoTime();
+        queue.put(item);
+        stage.recordProduced(System.nanoTime() - t);
+    }
+
+    /**
+     * Tells every thread of the next stage that there is nothing left.
+     */
+    private static void endStream(BlockingQueue<Item> queue, int consumers) {
+        try {
+            for (int i = 0; i < consumers; i++) {
+                queue.put(END_OF_STREAM);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void fail(List<TranslationReport.Failure> failures, String file, StageMetrics stage, Throwable ex) {
+        LOG.error("Unable to {} {}: {}", new Object[] {stage.getName(), file, ex.toString()});
+        failures.add(new TranslationReport.Failure(file, stage.getName(), ex));
+    }
+
+    private static int checkPositive(String name, int value) {
+        if (value < 1) {
+            throw new IllegalArgumentException(name + " must be at least 1, not " + value);
+        }
+        return value;
+    }
+
+    /**
+     * A file or experiment on its way through the pipeline.
+     */
+    private static class Item {
+        private final String file;
+        private final Map data;
+
+        Item(String file, Map data) {
+            this.file = file;
+            this.data = data;
+        }
+    }
+
+    private static class Output {
+        private final TranslatorOutput translator;
+        private final String directory;
+
+        Output(TranslatorOutput translator, String directory) {
+            this.translator = translator;
+            this.directory = directory;
+        }
+    }
+}
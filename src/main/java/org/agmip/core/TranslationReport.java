@@ -0,0 +1,99 @@
+package org.agmip.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The outcome of a {@link TranslationExecutor} run: the metrics of every
+ * stage and the failures, which do not stop the run.
+ *
+ * @since 1.2
+ */
+public class TranslationReport {
+    private final List<StageMetrics> stages;
+    private final List<Failure> failures;
+    private final long elapsedNanos;
+
+    TranslationReport(List<StageMetrics> stages, List<Failure> failures, long elapsedNanos) {
+        this.stages = Collections.unmodifiableList(new ArrayList<StageMetrics>(stages));
+        this.failures = Collections.unmodifiableList(new ArrayList<Failure>(failures));
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * Returns the metrics of the stages, in pipeline order: read, transform
+     * and one write stage per output.
+     */
+    public List<StageMetrics> getStages() {
+        return stages;
+    }
+
+    /**
+     * Returns the metrics of a stage.
+     *
+     * @return the metrics or <code>null</code> if there is no such stage.
+     */
+    public StageMetrics getStage(String name) {
+        for (StageMetrics stage : stages) {
+            if (stage.getName().equals(name)) {
+                return stage;
+            }
+        }
+        return null;
+    }
+
+    public List<Failure> getFailures() {
+        return failures;
+    }
+
+    public boolean hasFailures() {
+        return !failures.isEmpty();
+    }
+
+    /**
+     * Returns the wall clock time of the run.
+     */
+    public long getElapsedTime(TimeUnit unit) {
+        return unit.convert(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public String toString() {
+        return "TranslationReport{elapsedMs=" + getElapsedTime(TimeUnit.MILLISECONDS) + ", failures="
+            + failures.size() + ", stages=" + stages + "}";
+    }
+
+    /**
+     * An input file which failed at some stage.
+     */
+    public static class Failure {
+        private final String file;
+        private final String stage;
+        private final Throwable cause;
+
+        Failure(String file, String stage, Throwable cause) {
+            this.file = file;
+            this.stage = stage;
+            this.cause = cause;
+        }
+
+        public String getFile() {
+            return file;
+        }
+
+        public String getStage() {
+            return stage;
+        }
+
+        public Throwable getCause() {
+            return cause;
+        }
+
+        @Override
+        public String toString() {
+            return stage + " failed for " + file + ": " + cause;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package org.agmip.core.types;
+
+/**
+ * Receives the entries of a data package one at a time, as they are read.
+ */
+
+import java.io.IOException;
+import java.util.HashMap;
+
+public interface DatasetSink {
+    /**
+     * The content of an entry holding the top level values of a package
+     * which are not lists of entries. It is passed before the entries, and
+     * sinks which only write entries may ignore it.
+     */
+    public static final String PACKAGE_VALUES = "package";
+
+    /**
+     * The content of an empty entry passed before the only
+     * <code>experiments</code> entry, when the dataset is a single experiment
+     * rather than a package. Sinks may ignore it.
+     */
+    public static final String SINGLE_EXPERIMENT = "experiment";
+
+    /**
+     * Accepts a single entry of a data package.
+     *
+     * @param content the package section the entry belongs to (such as
+     *        <code>experiments</code>, <code>weathers</code> or <code>soils</code>)
+     * @param entry the entry itself
+     */
+    public void accept(String content, HashMap<String, Object> entry) throws IOException;
+}
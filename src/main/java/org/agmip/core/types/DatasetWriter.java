@@ -0,0 +1,21 @@
+package org.agmip.core.types;
+
+/**
+ * A {@link DatasetSink} which has to be closed once every entry has been
+ * written, or aborted if writing fails part way.
+ */
+
+import java.io.IOException;
+
+public interface DatasetWriter extends DatasetSink {
+    /**
+     * Finishes the output once every entry has been accepted.
+     */
+    public void close() throws IOException;
+
+    /**
+     * Discards the output when writing failed part way, instead of closing
+     * it, so no truncated dataset is left behind. Must not throw.
+     */
+    public void abort();
+}
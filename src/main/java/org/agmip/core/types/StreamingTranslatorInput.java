@@ -0,0 +1,16 @@
+package org.agmip.core.types;
+
+/**
+ * The streaming counterpart of {@link TranslatorInput}, for translators
+ * which can hand over experiments, weathers and soils as they are read.
+ *
+ * @see TranslatorAdapters
+ */
+
+public interface StreamingTranslatorInput extends TranslatorIO {
+    /**
+     * Reads a file, passing every entry to the sink as soon as it is
+     * complete. The sink may block, which holds the reader back.
+     */
+    public void readFile(String file, DatasetSink sink) throws Exception;
+}
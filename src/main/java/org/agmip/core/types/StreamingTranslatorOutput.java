@@ -0,0 +1,19 @@
+package org.agmip.core.types;
+
+/**
+ * The streaming counterpart of {@link TranslatorOutput}, for translators
+ * which can write experiments, weathers and soils one at a time.
+ *
+ * @see TranslatorAdapters
+ */
+
+import java.io.IOException;
+
+public interface StreamingTranslatorOutput extends TranslatorIO {
+    /**
+     * Opens a writer for the output directory. Entries are written as they
+     * are passed to the writer, which must be closed once the last one has
+     * been passed, or aborted if they could not all be passed.
+     */
+    public DatasetWriter openWriter(String outputDirectory) throws IOException;
+}
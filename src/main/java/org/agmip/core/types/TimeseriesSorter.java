@@ -0,0 +1,131 @@
+package org.agmip.core.types;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sorts time series rows (such as <code>dailyWeather</code> or observed
+ * <code>timeSeries</code>) in the same order as {@link TimeseriesComparator},
+ * reading the sorting key of every row only once.
+ *
+ * When every key is a <code>yyyyMMdd</code> date, the keys are parsed into
+ * <code>int</code>s and sorted as primitives, otherwise they are compared as
+ * strings. Rows without a key are moved to the end and rows with equal keys
+ * keep their relative order.
+ */
+@SuppressWarnings("unchecked")
+public class TimeseriesSorter {
+    private static final int MISSING = Integer.MAX_VALUE;
+
+    /**
+     * Sorts the rows in place.
+     *
+     * @param rows the rows to sort
+     * @param sortingKey the variable to sort on (<code>w_date</code>,
+     *        <code>date</code>...)
+     */
+    public static <T extends Map<String, String>> void sort(List<T> rows, String sortingKey) {
+        int size = rows.size();
+        int[] dates = new int[size];
+        boolean sorted = true;
+        for (int i = 0; i < size; i++) {
+            String value = rows.get(i).get(sortingKey);
+            int date = (value == null) ? MISSING : parseDate(value);
+            if (date == -1) {
+                sortByString(rows, sortingKey);
+                return;
+            }
+            dates[i] = date;
+            if (i > 0 && dates[i - 1] > date) {
+                sorted = false;
+            }
+        }
+        if (sorted) {
+            return;
+        }
+
+        // The row index in the low bits makes equal dates keep their order.
+        long[] keys = new long[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = ((long) dates[i] << 32) | i;
+        }
+        Arrays.sort(keys);
+        reorder(rows, keys);
+    }
+
+    /**
+     * Checks in a single pass whether the rows are already sorted.
+     */
+    public static boolean isSorted(List<? extends Map<String, String>> rows, String sortingKey) {
+        String previous = null;
+        for (int i = 0; i < rows.size(); i++) {
+            String value = rows.get(i).get(sortingKey);
+            if (i > 0 && compareKeys(previous, value) > 0) {
+                return false;
+            }
+            previous = value;
+        }
+        return true;
+    }
+
+    /**
+     * Parses a <code>yyyyMMdd</code> date into an <code>int</code> with the
+     * same ordering as the string.
+     *
+     * @return the date, or -1 if the value is not eight digits.
+     */
+    public static int parseDate(String value) {
+        if (value.length() != 8) {
+            return -1;
+        }
+        int date = 0;
+        for (int i = 0; i < 8; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            date = date * 10 + (c - '0');
+        }
+        return date;
+    }
+
+    private static <T extends Map<String, String>> void sortByString(List<T> rows, String sortingKey) {
+        int size = rows.size();
+        final String[] values = new String[size];
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = rows.get(i).get(sortingKey);
+            order[i] = i;
+        }
+        // Arrays.sort on objects is stable
+        Arrays.sort(order, new Comparator<Integer>() {
+            public int compare(Integer a, Integer b) {
+                return compareKeys(values[a], values[b]);
+            }
+        });
+        long[] keys = new long[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = order[i];
+        }
+        reorder(rows, keys);
+    }
+
+    private static <T extends Map<String, String>> void reorder(List<T> rows, long[] keys) {
+        Object[] original = rows.toArray();
+        for (int i = 0; i < keys.length; i++) {
+            rows.set(i, (T) original[(int) keys[i]]);
+        }
+    }
+
+    private static int compareKeys(String a, String b) {
+        if (a != null && b != null) {
+            return a.compareTo(b);
+        } else if (a == null && b == null) {
+            return 0;
+        } else {
+            return (a == null) ? 1 : -1;
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package org.agmip.core.types;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.agmip.util.MapUtil;
+
+/**
+ * Bridges between the whole dataset translator interfaces
+ * ({@link TranslatorInput}, {@link TranslatorOutput}) and their streaming
+ * counterparts ({@link StreamingTranslatorInput},
+ * {@link StreamingTranslatorOutput}).
+ *
+ * A dataset is either a data package (<code>experiments</code>,
+ * <code>weathers</code> and <code>soils</code> lists) or a single
+ * experiment, which is streamed as the only entry of
+ * <code>experiments</code>. The other top level values of a package, and
+ * whether the dataset was a single experiment, are passed along as
+ * {@link DatasetSink#PACKAGE_VALUES} and
+ * {@link DatasetSink#SINGLE_EXPERIMENT} entries, so a dataset collected
+ * back by these adapters has the same shape it was read with.
+ */
+@SuppressWarnings("unchecked")
+public class TranslatorAdapters {
+    private static final String[] PACKAGE_CONTENTS = {"experiments", "weathers", "soils"};
+    private static final Object[] END_OF_STREAM = new Object[0];
+
+    private TranslatorAdapters() {}
+
+    /**
+     * Streams the dataset read by an existing input translator. The whole
+     * dataset is still read into memory by the translator itself.
+     */
+    public static StreamingTranslatorInput streaming(final TranslatorInput input) {
+        return new StreamingTranslatorInput() {
+            public void readFile(String file, DatasetSink sink) throws Exception {
+                emit(input.readFile(file), sink);
+            }
+        };
+    }
+
+    /**
+     * Collects the streamed entries into a data package and hands it to an
+     * existing output translator when the writer is closed. Nothing is
+     * written when the writer is aborted.
+     */
+    public static StreamingTranslatorOutput streaming(final TranslatorOutput output) {
+        return new StreamingTranslatorOutput() {
+            public DatasetWriter openWriter(final String outputDirectory) {
+                return new PackageCollector() {
+                    public void close() throws IOException {
+                        output.writeFile(outputDirectory, getDataset());
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * Collects the entries of a streaming input translator into a data
+     * package, or a single experiment.
+     */
+    public static TranslatorInput buffered(final StreamingTranslatorInput input) {
+        return new TranslatorInput() {
+            public Map readFile(String file) throws Exception {
+                PackageCollector collector = new PackageCollector();
+                input.readFile(file, collector);
+                return collector.getDataset();
+            }
+        };
+    }
+
+    /**
+     * Writes a whole dataset through a streaming output translator.
+     */
+    public static TranslatorOutput buffered(final StreamingTranslatorOutput output) {
+        return new TranslatorOutput() {
+            public void writeFile(String outputDirectory, Map data) throws IOException {
+                DatasetWriter writer = output.openWriter(outputDirectory);
+                boolean finished = false;
+                try {
+                    emit(data, writer);
+                    finished = true;
+                } finally {
+                    if (!finished) {
+                        writer.abort();
+                    }
+                }
+                writer.close();
+            }
+        };
+    }
+
+    /**
+     * Passes every entry of a dataset to a sink. The top level values of a
+     * package which are not package contents are passed first, as a single
+     * {@link DatasetSink#PACKAGE_VALUES} entry.
+     *
+     * @param data a data package or a single experiment
+     * @param sink receives every entry
+     */
+    public static void emit(Map data, DatasetSink sink) throws IOException {
+        Map<String, Object> m = (Map<String, Object>) data;
+        HashMap<String, Object> values = new HashMap<String, Object>(m);
+        boolean isPackage = false;
+        for (String content : PACKAGE_CONTENTS) {
+            if (m.containsKey(content)) {
+                isPackage = true;
+                values.remove(content);
+            }
+        }
+        if (!isPackage) {
+            HashMap<String, Object> experiment = (m instanceof HashMap) ? (HashMap<String, Object>) m : values;
+            sink.accept(DatasetSink.SINGLE_EXPERIMENT, new HashMap<String, Object>());
+            sink.accept("experiments", experiment);
+            return;
+        }
+        if (!values.isEmpty()) {
+            sink.accept(DatasetSink.PACKAGE_VALUES, values);
+        }
+        for (String content : PACKAGE_CONTENTS) {
+            for (HashMap<String, Object> entry : MapUtil.getRawPackageContents(m, content)) {
+                sink.accept(content, entry);
+            }
+        }
+    }
+
+    /**
+     * Reads a file and writes its entries at the same time.
+     *
+     * The input translator runs on its own thread and hands entries over
+     * through a bounded queue, so it is held back whenever it gets more than
+     * <code>capacity</code> entries ahead of the output translator. If either
+     * side fails, the other one is stopped, the writer is aborted instead of
+     * closed and the failure is rethrown.
+     *
+     * @param input reads the file
+     * @param file the file to read
+     * @param output writes the entries
+     * @param outputDirectory where the entries are written
+     * @param capacity the maximum number of entries waiting to be written
+     * @return the number of entries written, not counting the
+     *         {@link DatasetSink#PACKAGE_VALUES} and
+     *         {@link DatasetSink#SINGLE_EXPERIMENT} ones
+     */
+    public static int pipe(final StreamingTranslatorInput input, final String file, StreamingTranslatorOutput output, String outputDirectory, int capacity) throws Exception {
+        final BlockingQueue<Object[]> queue = new ArrayBlockingQueue<Object[]>(capacity);
+        final AtomicBoolean aborted = new AtomicBoolean(false);
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+
+        Thread reader = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    input.readFile(file, new DatasetSink() {
+                        public void accept(String content, HashMap<String, Object> entry) throws IOException {
+                            try {
+                                if (aborted.get()) {
+                                    throw new InterruptedException();
+                                }
+                                queue.put(new Object[] {content, entry});
+                            } catch (InterruptedException ex) {
+                                throw new InterruptedIOException("The output translator stopped");
+                            }
+                        }
+                    });
+                } catch (Throwable t) {
+                    failure.set(t);
+                } finally {
+                    if (!aborted.get()) {
+                        try {
+                            queue.put(END_OF_STREAM);
+                        } catch (InterruptedException ex) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                }
+            }
+        }, "agmip-reader-" + file);
+        reader.setDaemon(true);
+        reader.start();
+
+        int count = 0;
+        boolean finished = false;
+        DatasetWriter writer = output.openWriter(outputDirectory);
+        try {
+            while (true) {
+                Object[] item = queue.take();
+                if (item == END_OF_STREAM) {
+                    break;
+                }
+                String content = (String) item[0];
+                writer.accept(content, (HashMap<String, Object>) item[1]);
+                if (!content.equals(DatasetSink.PACKAGE_VALUES) && !content.equals(DatasetSink.SINGLE_EXPERIMENT)) {
+                    count++;
+                }
+            }
+            // The reader records its failure before ending the stream.
+            finished = failure.get() == null;
+        } finally {
+            if (!finished) {
+                aborted.set(true);
+                reader.interrupt();
+                queue.clear();
+                writer.abort();
+            }
+        }
+
+        Throwable t = failure.get();
+        if (t instanceof Exception) {
+            throw (Exception) t;
+        } else if (t instanceof Error) {
+            throw (Error) t;
+        }
+        writer.close();
+        return count;
+    }
+
+    /**
+     * Gathers streamed entries back into a data package, or a single
+     * experiment.
+     */
+    private static class PackageCollector implements DatasetWriter {
+        private final HashMap<String, Object> pkg = new HashMap<String, Object>();
+        private boolean single = false;
+
+        public void accept(String content, HashMap<String, Object> entry) {
+            if (content.equals(DatasetSink.PACKAGE_VALUES)) {
+                pkg.putAll(entry);
+                return;
+            } else if (content.equals(DatasetSink.SINGLE_EXPERIMENT)) {
+                single = true;
+                return;
+            }
+            ArrayList<HashMap<String, Object>> entries = (ArrayList<HashMap<String, Object>>) pkg.get(content);
+            if (entries == null) {
+                entries = new ArrayList<HashMap<String, Object>>();
+                pkg.put(content, entries);
+            }
+            entries.add(entry);
+        }
+
+        public void close() throws IOException {}
+
+        public void abort() {
+            pkg.clear();
+            single = false;
+        }
+
+        /**
+         * Returns the collected package, or its only experiment if the
+         * dataset was a single experiment.
+         */
+        protected HashMap<String, Object> getDataset() {
+            if (single && pkg.size() == 1) {
+                ArrayList<HashMap<String, Object>> experiments = (ArrayList<HashMap<String, Object>>) pkg.get("experiments");
+                if (experiments != null && experiments.size() == 1) {
+                    return experiments.get(0);
+                }
+            }
+            return pkg;
+        }
+    }
+}
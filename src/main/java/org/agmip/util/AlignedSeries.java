@@ -0,0 +1,167 @@
+package org.agmip.util;
+
+import java.util.Arrays;
+
+/**
+ * Pairs of observed and simulated values of a variable on the same dates,
+ * as built by {@link DatedSeries#align}.
+ *
+ * The pairs are stored in primitive arrays sorted by date. A series can be
+ * passed back to <code>align</code> to be refilled, so that calibration
+ * loops do not allocate once the arrays are large enough.
+ *
+ * @since 1.2
+ */
+public class AlignedSeries {
+    private String variable;
+    private int size = 0;
+    private int[] days;
+    private double[] observed;
+    private double[] simulated;
+
+    public AlignedSeries() {
+        this(16);
+    }
+
+    /**
+     * @param capacity the number of pairs held before the arrays grow
+     */
+    public AlignedSeries(int capacity) {
+        days = new int[Math.max(1, capacity)];
+        observed = new double[days.length];
+        simulated = new double[days.length];
+    }
+
+    /**
+     * Returns the aligned variable.
+     */
+    public String getVariable() {
+        return variable;
+    }
+
+    /**
+     * Returns the number of pairs.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the day number of a pair.
+     *
+     * @see DateIndex#toEpochDay(String)
+     */
+    public int getDay(int pair) {
+        return days[pair];
+    }
+
+    /**
+     * Returns the <code>yyyyMMdd</code> date of a pair.
+     */
+    public String getDate(int pair) {
+        return DateIndex.fromEpochDay(days[pair]);
+    }
+
+    public double getObserved(int pair) {
+        return observed[pair];
+    }
+
+    public double getSimulated(int pair) {
+        return simulated[pair];
+    }
+
+    /**
+     * Copies the observed values into a new array.
+     */
+    public double[] toObservedArray() {
+        return Arrays.copyOf(observed, size);
+    }
+
+    /**
+     * Copies the simulated values into a new array.
+     */
+    public double[] toSimulatedArray() {
+        return Arrays.copyOf(simulated, size);
+    }
+
+    /**
+     * Returns the mean of the simulated minus the observed values, or
+     * <code>NaN</code> if there is no pair.
+     */
+    public double getBias() {
+        double acc = 0.0;
+        for (int i = 0; i < size; i++) {
+            acc += simulated[i] - observed[i];
+        }
+        return (size == 0) ? Double.NaN : acc / size;
+    }
+
+    /**
+     * Returns the mean absolute error, or <code>NaN</code> if there is no
+     * pair.
+     */
+    public double getMeanAbsoluteError() {
+        double acc = 0.0;
+        for (int i = 0; i < size; i++) {
+            acc += Math.abs(simulated[i] - observed[i]);
+        }
+        return (size == 0) ? Double.NaN : acc / size;
+    }
+
+    /**
+     * Returns the root mean square error, or <code>NaN</code> if there is no
+     * pair.
+     */
+    public double getRmse() {
+        double acc = 0.0;
+        for (int i = 0; i < size; i++) {
+            double error = simulated[i] - observed[i];
+            acc += error * error;
+        }
+        return (size == 0) ? Double.NaN : Math.sqrt(acc / size);
+    }
+
+    /**
+     * Returns Willmott's index of agreement, between 0 and 1 (a perfect
+     * match), or <code>NaN</code> if it is undefined.
+     */
+    public double getIndexOfAgreement() {
+        double mean = 0.0;
+        for (int i = 0; i < size; i++) {
+            mean += observed[i];
+        }
+        mean /= size;
+        double errors = 0.0;
+        double potential = 0.0;
+        for (int i = 0; i < size; i++) {
+            double error = simulated[i] - observed[i];
+            double spread = Math.abs(simulated[i] - mean) + Math.abs(observed[i] - mean);
+            errors += error * error;
+            potential += spread * spread;
+        }
+        return (potential == 0.0) ? Double.NaN : 1.0 - errors / potential;
+    }
+
+    void clear(String variable) {
+        this.variable = variable;
+        size = 0;
+    }
+
+    void add(int day, double observedValue, double simulatedValue) {
+        if (size == days.length) {
+            int capacity = days.length * 2;
+            days = Arrays.copyOf(days, capacity);
+            observed = Arrays.copyOf(observed, capacity);
+            simulated = Arrays.copyOf(simulated, capacity);
+        }
+        days[size] = day;
+        observed[size] = observedValue;
+        simulated[size] = simulatedValue;
+        size++;
+    }
+
+    @Override
+    public String toString() {
+        return "AlignedSeries{variable=" + variable + ", size=" + size + "}";
+    }
+}
@@ -0,0 +1,448 @@
+package org.agmip.util;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.base.Charsets;
+
+/**
+ * A compact binary alternative to {@link JSONAdapter} for caching datasets
+ * between pipeline stages.
+ *
+ * The format holds the same values as JSON (maps, lists, strings, numbers,
+ * booleans and <code>null</code>), with three differences:
+ * <ul>
+ * <li>every string (keys included) is written once and then referenced by
+ * its position in a string table built as the data is written;</li>
+ * <li>lists of flat string maps (<code>dailyWeather</code>,
+ * <code>soilLayer</code>, <code>timeSeries</code>, <code>events</code>...)
+ * are written column by column through {@link ColumnarDataList}, with dates
+ * and decimals stored as numbers;</li>
+ * <li>numbers are variable length integers.</li>
+ * </ul>
+ * Reading the file back returns exactly the maps which were written.
+ *
+ * @since 1.2
+ */
+@SuppressWarnings("unchecked")
+public class BinaryAdapter {
+    private static final byte[] MAGIC = {'A', 'C', 'E', 'B'};
+    private static final int VERSION = 1;
+
+    private static final int NULL = 0;
+    private static final int FALSE = 1;
+    private static final int TRUE = 2;
+    private static final int INT = 3;
+    private static final int LONG = 4;
+    private static final int DOUBLE = 5;
+    private static final int BIG_INTEGER = 6;
+    private static final int BIG_DECIMAL = 7;
+    private static final int STRING = 8;
+    private static final int MAP = 9;
+    private static final int LIST = 10;
+    private static final int TABLE = 11;
+
+    private BinaryAdapter() {}
+
+    public static byte[] toBinary(Map data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        write(data, out);
+        return out.toByteArray();
+    }
+
+    public static HashMap<String, Object> fromBinary(byte[] data) throws IOException {
+        return read(new ByteArrayInputStream(data));
+    }
+
+    public static void toBinaryFile(Map data, String path) throws IOException {
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(path));
+        try {
+            write(data, out);
+        } finally {
+            out.close();
+        }
+    }
+
+    public static HashMap<String, Object> fromBinaryFile(String path) throws IOException {
+        InputStream in = new FileInputStream(path);
+        try {
+            return read(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Writes a dataset to a stream. The stream is flushed but not closed.
+     *
+     * @param data the dataset, made of maps, lists, strings, numbers and
+     *        booleans
+     * @param out where the dataset is written
+     * @throws IOException if the stream fails or the dataset holds any other
+     *         type of value
+     */
+    public static void write(Map data, OutputStream out) throws IOException {
+        Encoder encoder = new Encoder(out);
+        encoder.writeBytes(MAGIC);
+        encoder.writeVarInt(VERSION);
+        encoder.writeValue(data);
+        encoder.flush();
+    }
+
+    /**
+     * Reads a dataset from a stream. The stream is not closed.
+     *
+     * @param in the binary source
+     * @return the dataset
+     */
+    public static HashMap<String, Object> read(InputStream in) throws IOException {
+        Decoder decoder = new Decoder(in);
+        byte[] magic = decoder.readBytes(MAGIC.length);
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (magic[i] != MAGIC[i]) {
+                throw new IOException("Not a binary ACE dataset");
+            }
+        }
+        int version = decoder.readVarInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported binary ACE dataset version: " + version);
+        }
+        if (decoder.readByte() != MAP) {
+            throw new IOException("Expected a map at the top level");
+        }
+        try {
+            return decoder.readMap(new HashMap<String, Object>());
+        } finally {
+            decoder.flushKeys();
+        }
+    }
+
+    /**
+     * Writes values to a buffered stream, keeping track of the strings
+     * already written.
+     */
+    static class Encoder {
+        private final OutputStream out;
+        private final byte[] buffer = new byte[8192];
+        private int position = 0;
+        private final HashMap<String, Integer> strings = new HashMap<String, Integer>();
+
+        Encoder(OutputStream out) {
+            this.out = out;
+        }
+
+        void writeValue(Object value) throws IOException {
+            if (value == null) {
+                writeByte(NULL);
+            } else if (value instanceof String) {
+                writeByte(STRING);
+                writeString((String) value);
+            } else if (value instanceof Map) {
+                writeByte(MAP);
+                Map<Object, Object> m = (Map<Object, Object>) value;
+                writeVarInt(m.size());
+                for (Map.Entry<Object, Object> e : m.entrySet()) {
+                    writeString(e.getKey().toString());
+                    writeValue(e.getValue());
+                }
+            } else if (value instanceof List) {
+                List<Object> list = (List<Object>) value;
+                if (isTable(list)) {
+                    writeByte(TABLE);
+                    ColumnarDataList.fromRows((List<Map<String, String>>) value).write(this);
+                } else {
+                    writeByte(LIST);
+                    writeVarInt(list.size());
+                    for (Object item : list) {
+                        writeValue(item);
+                    }
+                }
+            } else if (value instanceof Boolean) {
+                writeByte(((Boolean) value) ? TRUE : FALSE);
+            } else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+                writeByte(INT);
+                writeVarLong(((Number) value).longValue());
+            } else if (value instanceof Long) {
+                writeByte(LONG);
+                writeVarLong((Long) value);
+            } else if (value instanceof Double || value instanceof Float) {
+                writeByte(DOUBLE);
+                writeLong(Double.doubleToLongBits(((Number) value).doubleValue()));
+            } else if (value instanceof BigInteger) {
+                writeByte(BIG_INTEGER);
+                writeString(value.toString());
+            } else if (value instanceof BigDecimal) {
+                writeByte(BIG_DECIMAL);
+                writeString(value.toString());
+            } else {
+                throw new IOException("Unable to write a " + value.getClass().getName() + " to a binary ACE dataset");
+            }
+        }
+
+        /**
+         * Writes a string the first time it is seen, and its position in
+         * the string table afterwards. The reader tells them apart because
+         * a new string always takes the next free position.
+         */
+        void writeString(String value) throws IOException {
+            Integer index = strings.get(value);
+            if (index != null) {
+                writeVarInt(index);
+                return;
+            }
+            writeVarInt(strings.size());
+            strings.put(value, strings.size());
+            byte[] bytes = value.getBytes(Charsets.UTF_8);
+            writeVarInt(bytes.length);
+            writeBytes(bytes);
+        }
+
+        void writeByte(int b) throws IOException {
+            if (position == buffer.length) {
+                flushBuffer();
+            }
+            buffer[position++] = (byte) b;
+        }
+
+        void writeBytes(byte[] bytes) throws IOException {
+            if (bytes.length > buffer.length - position) {
+                flushBuffer();
+                if (bytes.length > buffer.length) {
+                    out.write(bytes);
+                    return;
+                }
+            }
+            System.arraycopy(bytes, 0, buffer, position, bytes.length);
+            position += bytes.length;
+        }
+
+        void writeVarInt(int value) throws IOException {
+            while ((value & ~0x7F) != 0) {
+                writeByte((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            writeByte(value);
+        }
+
+        /**
+         * Writes a signed value in zigzag encoding, so small negative values
+         * stay short.
+         */
+        void writeVarLong(long value) throws IOException {
+            long v = (value << 1) ^ (value >> 63);
+            while ((v & ~0x7FL) != 0) {
+                writeByte((int) ((v & 0x7F) | 0x80));
+                v >>>= 7;
+            }
+            writeByte((int) v);
+        }
+
+        void writeLong(long value) throws IOException {
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                writeByte((int) (value >>> shift));
+            }
+        }
+
+        void flush() throws IOException {
+            flushBuffer();
+            out.flush();
+        }
+
+        private void flushBuffer() throws IOException {
+            out.write(buffer, 0, position);
+            position = 0;
+        }
+
+        private static boolean isTable(List<Object> list) {
+            if (list.isEmpty()) {
+                return false;
+            }
+            for (Object item : list) {
+                if (!(item instanceof Map)) {
+                    return false;
+                }
+                for (Map.Entry<Object, Object> e : ((Map<Object, Object>) item).entrySet()) {
+                    if (!(e.getKey() instanceof String) || !(e.getValue() instanceof String)) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Reads values from a buffered stream, rebuilding the string table as
+     * it goes.
+     */
+    static class Decoder {
+        private final InputStream in;
+        private final byte[] buffer = new byte[8192];
+        private int position = 0;
+        private int limit = 0;
+        private final ArrayList<String> strings = new ArrayList<String>();
+        private final KeyDictionary.Lookup keys = KeyDictionary.getDefault().lookup();
+
+        Decoder(InputStream in) {
+            this.in = in;
+        }
+
+        /**
+         * Adds the key lookups of the decoder to the dictionary statistics.
+         */
+        void flushKeys() {
+            keys.flush();
+        }
+
+        Object readValue() throws IOException {
+            int tag = readByte();
+            switch (tag) {
+                case NULL:
+                    return null;
+                case FALSE:
+                    return Boolean.FALSE;
+                case TRUE:
+                    return Boolean.TRUE;
+                case INT:
+                    return (int) readVarLong();
+                case LONG:
+                    return readVarLong();
+                case DOUBLE:
+                    return Double.longBitsToDouble(readLong());
+                case BIG_INTEGER:
+                    return new BigInteger(readString());
+                case BIG_DECIMAL:
+                    return new BigDecimal(readString());
+                case STRING:
+                    return readString();
+                case MAP:
+                    return readMap(new LinkedHashMap<String, Object>());
+                case LIST:
+                    int size = readVarInt();
+                    ArrayList<Object> list = new ArrayList<Object>(size);
+                    for (int i = 0; i < size; i++) {
+                        list.add(readValue());
+                    }
+                    return list;
+                case TABLE:
+                    return ColumnarDataList.read(this).toDataList();
+                default:
+                    throw new IOException("Unknown value tag: " + tag);
+            }
+        }
+
+        <M extends Map<String, Object>> M readMap(M acc) throws IOException {
+            int size = readVarInt();
+            for (int i = 0; i < size; i++) {
+                String key = readKey();
+                acc.put(key, readValue());
+            }
+            return acc;
+        }
+
+        String readString() throws IOException {
+            return readString(false);
+        }
+
+        /**
+         * Reads a string used as a key, sharing it through the
+         * {@link KeyDictionary}.
+         */
+        String readKey() throws IOException {
+            return readString(true);
+        }
+
+        private String readString(boolean key) throws IOException {
+            int index = readVarInt();
+            if (index < strings.size()) {
+                return strings.get(index);
+            }
+            if (index != strings.size()) {
+                throw new IOException("Invalid string reference: " + index);
+            }
+            String value = new String(readBytes(readVarInt()), Charsets.UTF_8);
+            if (key) {
+                value = keys.canonicalize(value);
+            }
+            strings.add(value);
+            return value;
+        }
+
+        int readByte() throws IOException {
+            if (position == limit) {
+                fill();
+            }
+            return buffer[position++] & 0xFF;
+        }
+
+        byte[] readBytes(int length) throws IOException {
+            byte[] acc = new byte[length];
+            int copied = 0;
+            while (copied < length) {
+                if (position == limit) {
+                    fill();
+                }
+                int n = Math.min(length - copied, limit - position);
+                System.arraycopy(buffer, position, acc, copied, n);
+                position += n;
+                copied += n;
+            }
+            return acc;
+        }
+
+        int readVarInt() throws IOException {
+            int value = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                int b = readByte();
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Malformed variable length integer");
+        }
+
+        long readVarLong() throws IOException {
+            long v = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                v |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return (v >>> 1) ^ -(v & 1);
+                }
+            }
+            throw new IOException("Malformed variable length integer");
+        }
+
+        long readLong() throws IOException {
+            long value = 0;
+            for (int i = 0; i < 8; i++) {
+                value = (value << 8) | readByte();
+            }
+            return value;
+        }
+
+        private void fill() throws IOException {
+            int n = in.read(buffer, 0, buffer.length);
+            if (n <= 0) {
+                throw new EOFException("Unexpected end of binary ACE dataset");
+            }
+            position = 0;
+            limit = n;
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package org.agmip.util;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A view of the top level values of a bucket, read straight from the raw
+ * bucket instead of being copied like {@link MapUtil.BucketEntry#getValues()}.
+ *
+ * The view only shows the <code>String</code> values of the bucket. It never
+ * changes the raw bucket: the first call to a method which modifies the view
+ * copies the values into a map owned by the view, and the view reads from
+ * that copy from then on.
+ *
+ * @since 1.2
+ */
+@SuppressWarnings("unchecked")
+public class BucketView extends AbstractMap<String, String> {
+    private final Map<String, Object> bucket;
+    private HashMap<String, String> copy = null;
+
+    /**
+     * @param bucket the raw bucket
+     */
+    public BucketView(Map<String, Object> bucket) {
+        this.bucket = bucket;
+    }
+
+    @Override
+    public String get(Object key) {
+        if (copy != null) {
+            return copy.get(key);
+        }
+        Object value = bucket.get(key);
+        return (value instanceof String) ? (String) value : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public String put(String key, String value) {
+        return copy().put(key, value);
+    }
+
+    @Override
+    public String remove(Object key) {
+        return copy().remove(key);
+    }
+
+    @Override
+    public void clear() {
+        copy().clear();
+    }
+
+    @Override
+    public Set<Map.Entry<String, String>> entrySet() {
+        if (copy != null) {
+            return copy.entrySet();
+        }
+        return new AbstractSet<Map.Entry<String, String>>() {
+            @Override
+            public Iterator<Map.Entry<String, String>> iterator() {
+                return new StringEntries(bucket.entrySet().iterator());
+            }
+
+            @Override
+            public int size() {
+                int size = 0;
+                for (Object value : bucket.values()) {
+                    if (value instanceof String) {
+                        size++;
+                    }
+                }
+                return size;
+            }
+        };
+    }
+
+    /**
+     * Returns <code>true</code> once the view has been modified and no longer
+     * reads from the raw bucket.
+     */
+    public boolean isCopied() {
+        return copy != null;
+    }
+
+    /**
+     * Returns the raw (possibly compressed) data list of the bucket, without
+     * copying it.
+     *
+     * @return the data list, or an empty list if the bucket has none.
+     */
+    public List<HashMap<String, String>> getRawDataList() {
+        for (Map.Entry<String, Object> entry : bucket.entrySet()) {
+            if (MapUtil.isDataListKey(entry.getKey()) && entry.getValue() instanceof List) {
+                return (List<HashMap<String, String>>) entry.getValue();
+            }
+        }
+        return new ArrayList<HashMap<String, String>>();
+    }
+
+    /**
+     * Returns a cursor over the data list of the bucket, decompressing values
+     * as they are read.
+     *
+     * @see DataListCursor
+     */
+    public DataListCursor cursor() {
+        boolean compressed = !(bucket.get("events") instanceof List);
+        return new DataListCursor(getRawDataList(), compressed);
+    }
+
+    private HashMap<String, String> copy() {
+        if (copy == null) {
+            HashMap<String, String> values = new HashMap<String, String>();
+            for (Map.Entry<String, Object> entry : bucket.entrySet()) {
+                if (entry.getValue() instanceof String) {
+                    values.put(entry.getKey(), (String) entry.getValue());
+                }
+            }
+            copy = values;
+        }
+        return copy;
+    }
+
+    /**
+     * Iterates over the entries of the raw bucket which hold a string.
+     */
+    private static class StringEntries implements Iterator<Map.Entry<String, String>> {
+        private final Iterator<Map.Entry<String, Object>> entries;
+        private Map.Entry<String, Object> next = null;
+
+        StringEntries(Iterator<Map.Entry<String, Object>> entries) {
+            this.entries = entries;
+            advance();
+        }
+
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        public Map.Entry<String, String> next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            Map.Entry<String, String> entry = new AbstractMap.SimpleImmutableEntry<String, String>(next.getKey(), (String) next.getValue());
+            advance();
+            return entry;
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException("The raw bucket is read only");
+        }
+
+        private void advance() {
+            next = null;
+            while (entries.hasNext()) {
+                Map.Entry<String, Object> entry = entries.next();
+                if (entry.getValue() instanceof String) {
+                    next = entry;
+                    return;
+                }
+            }
+        }
+    }
+}
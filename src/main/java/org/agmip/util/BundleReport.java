@@ -0,0 +1,73 @@
+package org.agmip.util;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * What {@link MapUtil#bundle(java.util.ArrayList, BundleReport)} found while
+ * deduplicating weather stations and soils by content.
+ *
+ * For each package content (<code>weathers</code> or <code>soils</code>)
+ * the report lists the duplicates, which are entries with the same content
+ * as a kept entry but a different ID, and the conflicts, which are IDs used
+ * by entries with different contents.
+ *
+ * @since 1.2
+ */
+public class BundleReport {
+    private final HashMap<String, LinkedHashMap<String, String>> duplicates = new HashMap<String, LinkedHashMap<String, String>>();
+    private final HashMap<String, LinkedHashSet<String>> conflicts = new HashMap<String, LinkedHashSet<String>>();
+
+    /**
+     * Returns the IDs of the entries which were collapsed into another
+     * entry, mapped to the ID of the entry which was kept.
+     *
+     * @param content <code>weathers</code> or <code>soils</code>
+     */
+    public Map<String, String> getDuplicates(String content) {
+        LinkedHashMap<String, String> acc = duplicates.get(content);
+        return (acc == null) ? Collections.<String, String>emptyMap() : Collections.unmodifiableMap(acc);
+    }
+
+    /**
+     * Returns the IDs used by entries with different contents. Only the
+     * first entry with such an ID was kept.
+     *
+     * @param content <code>weathers</code> or <code>soils</code>
+     */
+    public Set<String> getConflicts(String content) {
+        LinkedHashSet<String> acc = conflicts.get(content);
+        return (acc == null) ? Collections.<String>emptySet() : Collections.unmodifiableSet(acc);
+    }
+
+    public boolean hasConflicts() {
+        return !conflicts.isEmpty();
+    }
+
+    void addDuplicate(String content, String id, String keptId) {
+        LinkedHashMap<String, String> acc = duplicates.get(content);
+        if (acc == null) {
+            acc = new LinkedHashMap<String, String>();
+            duplicates.put(content, acc);
+        }
+        acc.put(id, keptId);
+    }
+
+    void addConflict(String content, String id) {
+        LinkedHashSet<String> acc = conflicts.get(content);
+        if (acc == null) {
+            acc = new LinkedHashSet<String>();
+            conflicts.put(content, acc);
+        }
+        acc.add(id);
+    }
+
+    @Override
+    public String toString() {
+        return "BundleReport{duplicates=" + duplicates + ", conflicts=" + conflicts + "}";
+    }
+}
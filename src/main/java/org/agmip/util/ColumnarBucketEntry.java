@@ -0,0 +1,103 @@
+package org.agmip.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link MapUtil.BucketEntry} which keeps its data list in a
+ * {@link ColumnarDataList} instead of one <code>HashMap</code> per row.
+ *
+ * Long series such as <code>dailyWeather</code> are decompressed straight
+ * into primitive columns. {@link #getDataList()} is still available for
+ * existing callers, but it materializes (and keeps) the rows the first time
+ * it is called, so new code should read through {@link #getColumns()}.
+ *
+ * @since 1.2
+ */
+public class ColumnarBucketEntry extends MapUtil.BucketEntry {
+    private static final Logger LOG = LoggerFactory.getLogger(ColumnarBucketEntry.class);
+    private ColumnarDataList columns = ColumnarDataList.fromRows(new ArrayList<HashMap<String, String>>());
+    private ArrayList<HashMap<String, String>> rows = null;
+
+    public ColumnarBucketEntry(HashMap<String, Object> m) {
+        super();
+        for (Map.Entry<String, Object> entry : m.entrySet()) {
+            String key = entry.getKey();
+            Object value = entry.getValue();
+
+            if (MapUtil.isDataListKey(key)) {
+                List<HashMap<String, String>> dataList = (List<HashMap<String, String>>) value;
+                if (key.equals("events")) {
+                    this.columns = ColumnarDataList.fromRows(dataList);
+                } else {
+                    this.columns = ColumnarDataList.fromCompressedRows(dataList);
+                }
+            } else {
+                try {
+                    getValues().put(KeyDictionary.getDefault().canonicalize(key), (String) value);
+                } catch (ClassCastException ex) {
+                    LOG.error("VALUE INSERTION ERROR [" + key + "]: " + value.toString());
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the columnar data list of this bucket.
+     */
+    public ColumnarDataList getColumns() {
+        return columns;
+    }
+
+    /**
+     * Returns the rows of this bucket, materializing them from the columns on
+     * the first call.
+     */
+    @Override
+    public ArrayList<HashMap<String, String>> getDataList() {
+        if (rows == null) {
+            rows = columns.toDataList();
+        }
+        return rows;
+    }
+
+    /**
+     * Returns a cursor which reads straight from the columns.
+     */
+    @Override
+    public DataListCursor cursor() {
+        return new DataListCursor(new ArrayList<HashMap<String, String>>(), false) {
+            @Override
+            public int size() {
+                return columns.size();
+            }
+
+            @Override
+            public String get(String key) {
+                if (getRowIndex() < 0 || getRowIndex() >= size()) {
+                    throw new IllegalStateException("The cursor is not positioned on a row");
+                }
+                return columns.getValue(key, getRowIndex());
+            }
+
+            @Override
+            public Set<String> keys() {
+                return new LinkedHashSet<String>(columns.getColumnNames());
+            }
+        };
+    }
+
+    /**
+     * The columns are decompressed as they are built, so there is nothing
+     * left to do.
+     */
+    @Override
+    public void parseDataList() {}
+}
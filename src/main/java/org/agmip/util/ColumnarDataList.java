@@ -0,0 +1,539 @@
+package org.agmip.util;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A column oriented copy of a bucket data list (such as
+ * <code>dailyWeather</code> or <code>soilLayer</code>).
+ *
+ * Instead of one <code>HashMap</code> per row, every variable is kept in a
+ * single column. Decimal values are stored as a <code>double[]</code> along
+ * with the number of decimals they were written with, dates
+ * (<code>yyyyMMdd</code>) as an <code>int[]</code>, and everything else as
+ * shared <code>String</code> references. Missing values are tracked with a
+ * bitmap per column.
+ *
+ * The original strings are always reproduced exactly, so
+ * {@link #toDataList()} returns the same rows that were used to build
+ * the columns.
+ *
+ * @since 1.2
+ */
+public class ColumnarDataList {
+    private static final int MAX_DIGITS = 15;
+    private static final int DECIMAL = 0;
+    private static final int DATE = 1;
+    private static final int STRING = 2;
+    private static final double[] POWERS_OF_TEN = new double[MAX_DIGITS + 1];
+    static {
+        POWERS_OF_TEN[0] = 1.0;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10.0;
+        }
+    }
+
+    private final int size;
+    private final List<String> names;
+    private final HashMap<String, Column> columns;
+
+    private ColumnarDataList(int size, ArrayList<String> names, HashMap<String, Column> columns) {
+        this.size = size;
+        this.names = Collections.unmodifiableList(names);
+        this.columns = columns;
+    }
+
+    /**
+     * Builds the columns from a list of uncompressed rows.
+     *
+     * @param rows the rows of a data list
+     * @return the columnar version of the rows
+     */
+    public static ColumnarDataList fromRows(List<? extends Map<String, String>> rows) {
+        LinkedHashMap<String, Boolean> seen = new LinkedHashMap<String, Boolean>();
+        for (Map<String, String> row : rows) {
+            for (String key : row.keySet()) {
+                if (!seen.containsKey(key)) {
+                    seen.put(key, Boolean.TRUE);
+                }
+            }
+        }
+        return build(new ArrayList<String>(seen.keySet()), rows, false);
+    }
+
+    /**
+     * Builds the columns directly from a compressed data list, applying the
+     * same rules as {@link MapUtil.BucketEntry#parseDataList()} without
+     * creating the merged rows.
+     *
+     * @param rows the rows of a compressed data list
+     * @return the columnar version of the decompressed rows
+     */
+    public static ColumnarDataList fromCompressedRows(List<? extends Map<String, String>> rows) {
+        ArrayList<String> keys = new ArrayList<String>();
+        if (!rows.isEmpty()) {
+            keys.addAll(rows.get(0).keySet());
+        }
+        return build(keys, rows, true);
+    }
+
+    /**
+     * Returns the number of rows.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the variables stored in this list.
+     */
+    public List<String> getColumnNames() {
+        return names;
+    }
+
+    public boolean hasColumn(String name) {
+        return columns.containsKey(name);
+    }
+
+    /**
+     * Returns <code>true</code> if the column is stored as numbers (decimals
+     * or dates), meaning {@link #getDouble(String, int)} never has to parse.
+     */
+    public boolean isNumeric(String name) {
+        Column c = columns.get(name);
+        return c != null && !(c instanceof StringColumn);
+    }
+
+    public boolean isMissing(String name, int row) {
+        Column c = columns.get(name);
+        return c == null || c.isMissing(row);
+    }
+
+    /**
+     * Returns the original string value of a variable in a row.
+     *
+     * @return the value or <code>null</code> if it is missing.
+     */
+    public String getValue(String name, int row) {
+        Column c = columns.get(name);
+        if (c == null || c.isMissing(row)) {
+            return null;
+        }
+        return c.getString(row);
+    }
+
+    /**
+     * Returns the numeric value of a variable in a row.
+     *
+     * @return the value, or <code>NaN</code> if it is missing or the column is
+     * not numeric.
+     */
+    public double getDouble(String name, int row) {
+        Column c = columns.get(name);
+        if (c == null || c.isMissing(row)) {
+            return Double.NaN;
+        }
+        return c.getDouble(row);
+    }
+
+    /**
+     * Copies a whole column into a new array, using <code>NaN</code> for
+     * missing values.
+     */
+    public double[] toDoubleArray(String name) {
+        double[] acc = new double[size];
+        for (int i = 0; i < size; i++) {
+            acc[i] = getDouble(name, i);
+        }
+        return acc;
+    }
+
+    /**
+     * Materializes a single row.
+     */
+    public HashMap<String, String> getRow(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row: " + row + ", Size: " + size);
+        }
+        HashMap<String, String> acc = new HashMap<String, String>();
+        for (String name : names) {
+            Column c = columns.get(name);
+            if (!c.isMissing(row)) {
+                acc.put(name, c.getString(row));
+            }
+        }
+        return acc;
+    }
+
+    /**
+     * Materializes every row, in the same form as
+     * {@link MapUtil.BucketEntry#getDataList()}.
+     */
+    public ArrayList<HashMap<String, String>> toDataList() {
+        ArrayList<HashMap<String, String>> acc = new ArrayList<HashMap<String, String>>(size);
+        for (int i = 0; i < size; i++) {
+            acc.add(getRow(i));
+        }
+        return acc;
+    }
+
+    /**
+     * Writes the columns in the {@link BinaryAdapter} format: for every
+     * column its name, type and a bitmap of the rows which have a value,
+     * followed by the values themselves.
+     */
+    void write(BinaryAdapter.Encoder out) throws IOException {
+        out.writeVarInt(size);
+        out.writeVarInt(names.size());
+        for (String name : names) {
+            Column c = columns.get(name);
+            out.writeString(name);
+            out.writeByte(c.type());
+            byte[] present = new byte[(size + 7) / 8];
+            for (int i = 0; i < size; i++) {
+                if (!c.isMissing(i)) {
+                    present[i >> 3] |= 1 << (i & 7);
+                }
+            }
+            out.writeBytes(present);
+            c.write(out, size);
+        }
+    }
+
+    /**
+     * Reads columns written by {@link #write(BinaryAdapter.Encoder)}.
+     */
+    static ColumnarDataList read(BinaryAdapter.Decoder in) throws IOException {
+        int size = in.readVarInt();
+        int count = in.readVarInt();
+        ArrayList<String> names = new ArrayList<String>(count);
+        HashMap<String, Column> columns = new HashMap<String, Column>();
+        for (int n = 0; n < count; n++) {
+            String name = in.readKey();
+            int type = in.readByte();
+            Column c;
+            if (type == DECIMAL) {
+                c = new DecimalColumn(size);
+            } else if (type == DATE) {
+                c = new DateColumn(size);
+            } else if (type == STRING) {
+                c = new StringColumn(size);
+            } else {
+                throw new IOException("Unknown column type: " + type);
+            }
+            byte[] present = in.readBytes((size + 7) / 8);
+            for (int i = 0; i < size; i++) {
+                if ((present[i >> 3] & (1 << (i & 7))) == 0) {
+                    c.setMissing(i);
+                }
+            }
+            c.read(in, size);
+            names.add(name);
+            columns.put(name, c);
+        }
+        return new ColumnarDataList(size, names, columns);
+    }
+
+    private static ColumnarDataList build(ArrayList<String> keys, List<? extends Map<String, String>> rows, boolean compressed) {
+        int size = rows.size();
+        Map<String, String> first = (size == 0) ? null : rows.get(0);
+        HashMap<String, Column> columns = new HashMap<String, Column>();
+        for (String key : keys) {
+            boolean dates = true;
+            boolean decimals = true;
+            for (int i = 0; i < size && (dates || decimals); i++) {
+                String value = resolve(rows, first, i, key, compressed);
+                if (value != null) {
+                    dates = dates && isDate(value);
+                    decimals = decimals && scaleOf(value) >= 0;
+                }
+            }
+            Column c;
+            if (dates) {
+                c = new DateColumn(size);
+            } else if (decimals) {
+                c = new DecimalColumn(size);
+            } else {
+                c = new StringColumn(size);
+            }
+            // Repeated strings share a single instance.
+            HashMap<String, String> shared = (c instanceof StringColumn) ? new HashMap<String, String>() : null;
+            for (int i = 0; i < size; i++) {
+                String value = resolve(rows, first, i, key, compressed);
+                if (value == null) {
+                    c.setMissing(i);
+                } else {
+                    if (shared != null) {
+                        String s = shared.get(value);
+                        if (s == null) {
+                            shared.put(value, value);
+                        } else {
+                            value = s;
+                        }
+                    }
+                    c.set(i, value);
+                }
+            }
+            columns.put(key, c);
+        }
+        return new ColumnarDataList(size, keys, columns);
+    }
+
+    private static String resolve(List<? extends Map<String, String>> rows, Map<String, String> first, int row, String key, boolean compressed) {
+        String value = rows.get(row).get(key);
+        if (!compressed || row == 0) {
+            return value;
+        }
+        if (value == null) {
+            return first.get(key);
+        }
+        return value.equals("") ? null : value;
+    }
+
+    private static boolean isDate(String value) {
+        if (value.length() != 8) {
+            return false;
+        }
+        for (int i = 0; i < 8; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of decimals of a plain decimal number which can be
+     * rebuilt exactly from its <code>double</code> value, or -1 if the value
+     * is anything else (leading zeros, exponents, too many digits...).
+     */
+    private static int scaleOf(String value) {
+        int l = value.length();
+        int i = 0;
+        if (l > 0 && value.charAt(0) == '-') {
+            i++;
+        }
+        int integerStart = i;
+        while (i < l && value.charAt(i) >= '0' && value.charAt(i) <= '9') {
+            i++;
+        }
+        int integerDigits = i - integerStart;
+        if (integerDigits == 0 || (integerDigits > 1 && value.charAt(integerStart) == '0')) {
+            return -1;
+        }
+        int scale = 0;
+        if (i < l) {
+            if (value.charAt(i) != '.') {
+                return -1;
+            }
+            i++;
+            while (i < l && value.charAt(i) >= '0' && value.charAt(i) <= '9') {
+                i++;
+                scale++;
+            }
+            if (scale == 0 || i < l) {
+                return -1;
+            }
+        }
+        if (integerDigits + scale > MAX_DIGITS) {
+            return -1;
+        }
+        if (integerStart == 1 && Double.parseDouble(value) == 0.0) {
+            // "-0" and friends would lose their sign
+            return -1;
+        }
+        return scale;
+    }
+
+    private static abstract class Column {
+        private final BitSet missing = new BitSet();
+
+        boolean isMissing(int row) {
+            return missing.get(row);
+        }
+
+        void setMissing(int row) {
+            missing.set(row);
+        }
+
+        abstract void set(int row, String value);
+
+        abstract int type();
+
+        /**
+         * Writes the values of the rows which are not missing.
+         */
+        abstract void write(BinaryAdapter.Encoder out, int size) throws IOException;
+
+        /**
+         * Reads the values of the rows which are not missing.
+         */
+        abstract void read(BinaryAdapter.Decoder in, int size) throws IOException;
+
+        abstract String getString(int row);
+
+        abstract double getDouble(int row);
+    }
+
+    private static class DecimalColumn extends Column {
+        private final double[] values;
+        private final byte[] scales;
+
+        DecimalColumn(int size) {
+            values = new double[size];
+            scales = new byte[size];
+        }
+
+        void set(int row, String value) {
+            values[row] = Double.parseDouble(value);
+            scales[row] = (byte) scaleOf(value);
+        }
+
+        String getString(int row) {
+            int scale = scales[row];
+            long unscaled = Math.round(values[row] * POWERS_OF_TEN[scale]);
+            if (scale == 0) {
+                return Long.toString(unscaled);
+            }
+            StringBuilder digits = new StringBuilder(MAX_DIGITS + 3);
+            digits.append(Math.abs(unscaled));
+            while (digits.length() <= scale) {
+                digits.insert(0, '0');
+            }
+            digits.insert(digits.length() - scale, '.');
+            if (unscaled < 0) {
+                digits.insert(0, '-');
+            }
+            return digits.toString();
+        }
+
+        double getDouble(int row) {
+            return values[row];
+        }
+
+        int type() {
+            return DECIMAL;
+        }
+
+        void write(BinaryAdapter.Encoder out, int size) throws IOException {
+            for (int i = 0; i < size; i++) {
+                if (!isMissing(i)) {
+                    out.writeByte(scales[i]);
+                    out.writeVarLong(Math.round(values[i] * POWERS_OF_TEN[scales[i]]));
+                }
+            }
+        }
+
+        void read(BinaryAdapter.Decoder in, int size) throws IOException {
+            for (int i = 0; i < size; i++) {
+                if (!isMissing(i)) {
+                    int scale = in.readByte();
+                    if (scale > MAX_DIGITS) {
+                        throw new IOException("Invalid decimal scale: " + scale);
+                    }
+                    scales[i] = (byte) scale;
+                    // Both operands are exact, so this rounds the same way
+                    // Double.parseDouble did.
+                    values[i] = in.readVarLong() / POWERS_OF_TEN[scale];
+                }
+            }
+        }
+    }
+
+    private static class DateColumn extends Column {
+        private final int[] values;
+
+        DateColumn(int size) {
+            values = new int[size];
+        }
+
+        void set(int row, String value) {
+            values[row] = Integer.parseInt(value);
+        }
+
+        String getString(int row) {
+            String digits = Integer.toString(values[row]);
+            while (digits.length() < 8) {
+                digits = "0" + digits;
+            }
+            return digits;
+        }
+
+        double getDouble(int row) {
+            return values[row];
+        }
+
+        int type() {
+            return DATE;
+        }
+
+        // Consecutive dates are written as the (usually tiny) difference
+        // from the previous one.
+        void write(BinaryAdapter.Encoder out, int size) throws IOException {
+            int previous = 0;
+            for (int i = 0; i < size; i++) {
+                if (!isMissing(i)) {
+                    out.writeVarLong((long) values[i] - previous);
+                    previous = values[i];
+                }
+            }
+        }
+
+        void read(BinaryAdapter.Decoder in, int size) throws IOException {
+            int previous = 0;
+            for (int i = 0; i < size; i++) {
+                if (!isMissing(i)) {
+                    values[i] = (int) (previous + in.readVarLong());
+                    previous = values[i];
+                }
+            }
+        }
+    }
+
+    private static class StringColumn extends Column {
+        private final String[] values;
+
+        StringColumn(int size) {
+            values = new String[size];
+        }
+
+        void set(int row, String value) {
+            values[row] = value;
+        }
+
+        String getString(int row) {
+            return values[row];
+        }
+
+        double getDouble(int row) {
+            return Double.NaN;
+        }
+
+        int type() {
+            return STRING;
+        }
+
+        void write(BinaryAdapter.Encoder out, int size) throws IOException {
+            for (int i = 0; i < size; i++) {
+                if (!isMissing(i)) {
+                    out.writeString(values[i]);
+                }
+            }
+        }
+
+        void read(BinaryAdapter.Decoder in, int size) throws IOException {
+            for (int i = 0; i < size; i++) {
+                if (!isMissing(i)) {
+                    values[i] = in.readString();
+                }
+            }
+        }
+    }
+}
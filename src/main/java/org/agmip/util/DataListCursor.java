@@ -0,0 +1,144 @@
+package org.agmip.util;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A forward only cursor over the rows of a bucket data list.
+ *
+ * When the data list is still compressed, values are looked up in the
+ * current row and fall back to the first row following the same rules as
+ * {@link MapUtil.BucketEntry#parseDataList()}, without building a merged
+ * map for every row.
+ *
+ * <pre>
+ * DataListCursor rows = bucket.cursor();
+ * while (rows.next()) {
+ *     String tmax = rows.get("tmax");
+ * }
+ * </pre>
+ *
+ * @since 1.2
+ */
+public class DataListCursor {
+    private final List<? extends Map<String, String>> rows;
+    private final boolean compressed;
+    private int index = -1;
+
+    /**
+     * @param rows the rows of a data list
+     * @param compressed <code>true</code> if the rows are still in the
+     *        compressed (sticky) format
+     */
+    public DataListCursor(List<? extends Map<String, String>> rows, boolean compressed) {
+        this.rows = rows;
+        this.compressed = compressed;
+    }
+
+    /**
+     * Moves to the next row.
+     *
+     * @return <code>false</code> once there are no rows left.
+     */
+    public boolean next() {
+        if (index < size()) {
+            index++;
+        }
+        return index < size();
+    }
+
+    /**
+     * Moves the cursor back before the first row.
+     */
+    public void reset() {
+        index = -1;
+    }
+
+    /**
+     * Returns the position of the current row.
+     */
+    public int getRowIndex() {
+        return index;
+    }
+
+    /**
+     * Returns the number of rows.
+     */
+    public int size() {
+        return rows.size();
+    }
+
+    /**
+     * Returns the value of a variable in the current row.
+     *
+     * @return the value or <code>null</code> if the row has no value for it.
+     */
+    public String get(String key) {
+        if (index < 0 || index >= size()) {
+            throw new IllegalStateException("The cursor is not positioned on a row");
+        }
+        Map<String, String> row = rows.get(index);
+        if (!compressed || index == 0) {
+            return row.get(key);
+        }
+        Map<String, String> first = rows.get(0);
+        if (!first.containsKey(key)) {
+            return null;
+        }
+        String value = row.get(key);
+        if (value == null) {
+            return first.get(key);
+        }
+        return value.equals("") ? null : value;
+    }
+
+    /**
+     * Reads a variable from every row into a new array, using
+     * <code>NaN</code> for missing or unparsable values. The cursor is
+     * left after the last row.
+     */
+    public double[] toDoubleArray(String key) {
+        double[] acc = new double[size()];
+        reset();
+        while (next()) {
+            String value = get(key);
+            if (value == null) {
+                acc[index] = Double.NaN;
+            } else {
+                try {
+                    acc[index] = Helpers.parseDoubleValue(value);
+                } catch (NumberFormatException ex) {
+                    acc[index] = Double.NaN;
+                }
+            }
+        }
+        return acc;
+    }
+
+    /**
+     * Returns the variables which may be present in the current row.
+     */
+    public Set<String> keys() {
+        if (index < 0 || index >= size()) {
+            return Collections.emptySet();
+        }
+        return Collections.unmodifiableSet(rows.get(compressed ? 0 : index).keySet());
+    }
+
+    /**
+     * Materializes the current row.
+     */
+    public HashMap<String, String> getRow() {
+        HashMap<String, String> acc = new HashMap<String, String>();
+        for (String key : keys()) {
+            String value = get(key);
+            if (value != null) {
+                acc.put(key, value);
+            }
+        }
+        return acc;
+    }
+}
@@ -0,0 +1,242 @@
+package org.agmip.util;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.LoadingCache;
+import com.google.common.cache.Weigher;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A shared, size bounded cache of weather stations (keyed by
+ * <code>wst_id</code>) or soils (keyed by <code>soil_id</code>).
+ *
+ * Entries are weighed by an estimate of the memory they hold, and the least
+ * recently used ones are evicted once the total weight goes over the limit.
+ * Entries which are not cached yet are fetched through the loader. They are
+ * stored raw (possibly compressed), the same way package entries are, so an
+ * experiment flattened with a cached station or soil has the same shape as
+ * one flattened from the package itself, and can be decompressed with
+ * {@link MapUtil#decompressAll(Map)}.
+ *
+ * <pre>
+ * DatasetCache weathers = DatasetCache.weathers(256 * 1024 * 1024, new CacheLoader&lt;String, HashMap&lt;String, Object&gt;&gt;() {
+ *     public HashMap&lt;String, Object&gt; load(String wst_id) throws Exception {
+ *         return readStation(wst_id);
+ *     }
+ * });
+ * </pre>
+ *
+ * Cached entries are shared, callers must not modify them.
+ *
+ * Failed loads are remembered too (up to {@value #MAX_FAILURES} IDs), so a
+ * package referencing a missing station many times only calls the loader
+ * and logs the failure once. A loader which returns <code>null</code> is
+ * treated as failing. {@link #put(HashMap)} and the invalidation methods
+ * forget the failures of the IDs involved, so they are loaded again.
+ *
+ * @since 1.2
+ */
+public class DatasetCache {
+    private static final Logger LOG = LoggerFactory.getLogger(DatasetCache.class);
+    /**
+     * The maximum number of IDs whose failed load is remembered.
+     */
+    public static final int MAX_FAILURES = 4096;
+
+    private final String content;
+    private final String idKey;
+    private final LoadingCache<String, HashMap<String, Object>> cache;
+    private final Cache<String, Throwable> failures = CacheBuilder.newBuilder().maximumSize(MAX_FAILURES).build();
+
+    /**
+     * @param content the package contents held by the cache
+     *        (<code>weathers</code> or <code>soils</code>)
+     * @param idKey the variable holding the ID of an entry
+     * @param maxBytes the approximate memory the cached entries may use
+     * @param loader loads a raw entry which is not cached, and throws or
+     *        returns <code>null</code> if there is no such entry
+     */
+    public DatasetCache(String content, String idKey, long maxBytes, CacheLoader<String, HashMap<String, Object>> loader) {
+        this.content = content;
+        this.idKey = idKey;
+        this.cache = CacheBuilder.newBuilder()
+            .maximumWeight(maxBytes)
+            .weigher(new Weigher<String, HashMap<String, Object>>() {
+                public int weigh(String id, HashMap<String, Object> entry) {
+                    return (int) Math.min(Integer.MAX_VALUE, estimateSize(entry));
+                }
+            })
+            .recordStats()
+            .build(loader);
+    }
+
+    /**
+     * Creates a cache of weather stations keyed by <code>wst_id</code>.
+     */
+    public static DatasetCache weathers(long maxBytes, CacheLoader<String, HashMap<String, Object>> loader) {
+        return new DatasetCache("weathers", "wst_id", maxBytes, loader);
+    }
+
+    /**
+     * Creates a cache of soils keyed by <code>soil_id</code>.
+     */
+    public static DatasetCache soils(long maxBytes, CacheLoader<String, HashMap<String, Object>> loader) {
+        return new DatasetCache("soils", "soil_id", maxBytes, loader);
+    }
+
+    /**
+     * Returns an entry, loading it if it is not cached.
+     *
+     * @throws ExecutionException if the loader failed or returned
+     *         <code>null</code>, now or in an earlier call for the same ID
+     */
+    public HashMap<String, Object> get(String id) throws ExecutionException {
+        Throwable failure = failures.getIfPresent(id);
+        if (failure != null) {
+            throw new ExecutionException(failure);
+        }
+        try {
+            return cache.get(id);
+        } catch (ExecutionException ex) {
+            throw failed(id, ex.getCause());
+        } catch (UncheckedExecutionException ex) {
+            throw failed(id, ex.getCause());
+        } catch (CacheLoader.InvalidCacheLoadException ex) {
+            throw failed(id, ex);
+        }
+    }
+
+    /**
+     * Returns an entry, loading it if it is not cached. A failure is only
+     * logged the first time the ID is looked up.
+     *
+     * @return the entry, or <code>null</code> if it could not be loaded.
+     */
+    public HashMap<String, Object> find(String id) {
+        if (failures.getIfPresent(id) != null) {
+            return null;
+        }
+        try {
+            return get(id);
+        } catch (ExecutionException ex) {
+            LOG.warn("Unable to load {} {}: {}", new Object[] {idKey, id, ex.getCause().toString()});
+            return null;
+        }
+    }
+
+    private ExecutionException failed(String id, Throwable cause) {
+        failures.put(id, cause);
+        return new ExecutionException(cause);
+    }
+
+    /**
+     * Returns an entry only if it is already cached.
+     */
+    public HashMap<String, Object> getIfPresent(String id) {
+        return cache.getIfPresent(id);
+    }
+
+    /**
+     * Caches a raw package entry under its ID, replacing any previous entry
+     * with the same ID. The entry must not be decompressed already, since
+     * decompressing it again would fill in its missing values.
+     *
+     * @return <code>false</code> if the entry has no ID.
+     */
+    public boolean put(HashMap<String, Object> entry) {
+        String id = MapUtil.getValueOr(entry, idKey, "");
+        if (id.equals("")) {
+            return false;
+        }
+        cache.put(id, entry);
+        failures.invalidate(id);
+        return true;
+    }
+
+    /**
+     * Caches every entry of the matching contents of a data package.
+     */
+    public void putAll(Map<String, Object> pkg) {
+        for (HashMap<String, Object> entry : MapUtil.getRawPackageContents(pkg, content)) {
+            put(entry);
+        }
+    }
+
+    public void invalidate(String id) {
+        cache.invalidate(id);
+        failures.invalidate(id);
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+        failures.invalidateAll();
+    }
+
+    /**
+     * Returns the number of cached entries.
+     */
+    public long size() {
+        return cache.size();
+    }
+
+    /**
+     * Returns the hit, miss, load and eviction counts of the cache.
+     */
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    /**
+     * Returns the variable holding the ID of an entry.
+     */
+    public String getIdKey() {
+        return idKey;
+    }
+
+    /**
+     * Estimates the memory held by a dataset, assuming a 64 bit JVM with
+     * compressed references. Keys are not counted, since they are shared
+     * through the {@link KeyDictionary}.
+     *
+     * @param value a map, list or string
+     * @return the approximate size in bytes
+     */
+    public static long estimateSize(Object value) {
+        if (value instanceof String) {
+            return 40 + 2 * ((String) value).length();
+        } else if (value instanceof Map) {
+            Map<?, ?> m = (Map<?, ?>) value;
+            long size = 48 + 4 * tableSize(m.size());
+            for (Object item : m.values()) {
+                size += 32 + estimateSize(item);
+            }
+            return size;
+        } else if (value instanceof List) {
+            List<?> list = (List<?>) value;
+            long size = 40 + 4 * list.size();
+            for (Object item : list) {
+                size += estimateSize(item);
+            }
+            return size;
+        }
+        return (value == null) ? 0 : 16;
+    }
+
+    private static int tableSize(int entries) {
+        int capacity = 16;
+        while (capacity * 3 / 4 < entries) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+}
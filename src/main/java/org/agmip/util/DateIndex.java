@@ -0,0 +1,372 @@
+package org.agmip.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.agmip.core.types.TimeseriesSorter;
+
+/**
+ * An index on the date of the rows of a time series, such as the
+ * <code>w_date</code> of <code>dailyWeather</code>.
+ *
+ * Dates are stored as sorted day numbers (days since 1970-01-01), so the
+ * rows of a date range are found with a binary search, or with a simple
+ * offset when the series has exactly one row per day. The rows do not
+ * have to be sorted; rows without a valid <code>yyyyMMdd</code> date are
+ * left out of the index.
+ *
+ * <pre>
+ * DateIndex days = DateIndex.forWeather(MapUtil.getBucket(experiment, "weather"));
+ * String tmax = days.getValue("tmax", "19820315");
+ * List&lt;Map&lt;String, String&gt;&gt; season = days.growingSeason(experiment, 0, 120);
+ * </pre>
+ *
+ * @since 1.2
+ */
+public class DateIndex {
+    private final List<? extends Map<String, String>> data;
+    private final int[] days;
+    private final int[] rows;
+    private final boolean daily;
+
+    private DateIndex(List<? extends Map<String, String>> data, int[] days, int[] rows) {
+        this.data = data;
+        this.days = days;
+        this.rows = rows;
+        boolean contiguous = true;
+        for (int i = 1; i < days.length && contiguous; i++) {
+            contiguous = days[i] == days[0] + i;
+        }
+        this.daily = contiguous;
+    }
+
+    /**
+     * Indexes decompressed rows on a date variable.
+     *
+     * @param data the rows, which are kept (not copied) by the index
+     * @param dateKey the date variable (<code>w_date</code>,
+     *        <code>date</code>...)
+     */
+    public static DateIndex build(List<? extends Map<String, String>> data, String dateKey) {
+        int[] dayByRow = new int[data.size()];
+        for (int i = 0; i < dayByRow.length; i++) {
+            String date = data.get(i).get(dateKey);
+            dayByRow[i] = (date == null) ? Integer.MIN_VALUE : toEpochDay(date);
+        }
+        return sort(data, dayByRow);
+    }
+
+    /**
+     * Indexes the rows read through a cursor, without keeping them: the
+     * index only maps dates to row positions, and {@link #getRowAt(int)}
+     * cannot be used.
+     */
+    static DateIndex build(DataListCursor cursor, String dateKey) {
+        int[] dayByRow = new int[cursor.size()];
+        cursor.reset();
+        while (cursor.next()) {
+            String date = cursor.get(dateKey);
+            dayByRow[cursor.getRowIndex()] = (date == null) ? Integer.MIN_VALUE : toEpochDay(date);
+        }
+        return sort(null, dayByRow);
+    }
+
+    private static DateIndex sort(List<? extends Map<String, String>> data, int[] dayByRow) {
+        long[] keys = new long[dayByRow.length];
+        int count = 0;
+        for (int i = 0; i < dayByRow.length; i++) {
+            if (dayByRow[i] != Integer.MIN_VALUE) {
+                // The row in the low bits keeps equal dates in their order.
+                keys[count++] = ((long) dayByRow[i] << 32) | i;
+            }
+        }
+        keys = Arrays.copyOf(keys, count);
+        Arrays.sort(keys);
+        int[] days = new int[count];
+        int[] rows = new int[count];
+        for (int i = 0; i < count; i++) {
+            days[i] = (int) (keys[i] >> 32);
+            rows[i] = (int) keys[i];
+        }
+        return new DateIndex(data, days, rows);
+    }
+
+    /**
+     * Indexes the <code>dailyWeather</code> of a weather bucket on
+     * <code>w_date</code>.
+     */
+    public static DateIndex forWeather(MapUtil.BucketEntry weather) {
+        return build(weather.getDataList(), "w_date");
+    }
+
+    /**
+     * Returns the number of indexed rows.
+     */
+    public int size() {
+        return days.length;
+    }
+
+    /**
+     * Returns <code>true</code> when the series has exactly one row for
+     * every day between its first and last dates.
+     */
+    public boolean isDaily() {
+        return daily;
+    }
+
+    /**
+     * Returns the first date of the series, or <code>null</code> if it is
+     * empty.
+     */
+    public String getFirstDate() {
+        return (days.length == 0) ? null : fromEpochDay(days[0]);
+    }
+
+    /**
+     * Returns the last date of the series, or <code>null</code> if it is
+     * empty.
+     */
+    public String getLastDate() {
+        return (days.length == 0) ? null : fromEpochDay(days[days.length - 1]);
+    }
+
+    /**
+     * Returns the day number of a position of the index.
+     */
+    public int getDay(int position) {
+        return days[position];
+    }
+
+    /**
+     * Returns the row found at a position of the index.
+     */
+    public Map<String, String> getRowAt(int position) {
+        if (data == null) {
+            throw new IllegalStateException("The index was built without its rows");
+        }
+        return data.get(rows[position]);
+    }
+
+    /**
+     * Returns the position in the original rows of a position of the index.
+     */
+    public int getRowIndex(int position) {
+        return rows[position];
+    }
+
+    /**
+     * Returns the position of the first indexed row on or after a day.
+     *
+     * @return a position between 0 and {@link #size()}
+     */
+    public int lowerBound(int day) {
+        if (daily && days.length > 0) {
+            long offset = (long) day - days[0];
+            return (int) Math.max(0, Math.min(days.length, offset));
+        }
+        int low = 0;
+        int high = days.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (days[mid] < day) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Returns the row of a date (the first one if there are several).
+     *
+     * @param date a <code>yyyyMMdd</code> date
+     * @return the row or <code>null</code> if there is none.
+     */
+    public Map<String, String> getRow(String date) {
+        int day = parse(date);
+        int position = lowerBound(day);
+        if (position < days.length && days[position] == day) {
+            return getRowAt(position);
+        }
+        return null;
+    }
+
+    /**
+     * Returns the value of a variable on a date.
+     *
+     * @return the value or <code>null</code> if there is no row for the date
+     *         or the row has no value for the variable.
+     */
+    public String getValue(String variable, String date) {
+        Map<String, String> row = getRow(date);
+        return (row == null) ? null : row.get(variable);
+    }
+
+    /**
+     * Returns the positions (in the index) of the rows between two days.
+     *
+     * @param from the first day, included
+     * @param to the last day, included
+     * @return <code>{start, end}</code>, the end being excluded
+     */
+    public int[] range(int from, int to) {
+        int start = lowerBound(from);
+        int end = (to == Integer.MAX_VALUE) ? days.length : lowerBound(to + 1);
+        return new int[] {start, Math.max(start, end)};
+    }
+
+    /**
+     * Returns the rows between two dates, sorted by date.
+     *
+     * @param from the first date (<code>yyyyMMdd</code>), included
+     * @param to the last date (<code>yyyyMMdd</code>), included
+     */
+    public List<Map<String, String>> between(String from, String to) {
+        return rowsIn(range(parse(from), parse(to)));
+    }
+
+    /**
+     * Returns the rows of a window around a date.
+     *
+     * @param date the reference date (<code>yyyyMMdd</code>)
+     * @param daysBefore the number of days included before the date
+     * @param daysAfter the number of days included after the date
+     */
+    public List<Map<String, String>> window(String date, int daysBefore, int daysAfter) {
+        int day = parse(date);
+        return rowsIn(range(day - daysBefore, day + daysAfter));
+    }
+
+    private List<Map<String, String>> rowsIn(int[] range) {
+        ArrayList<Map<String, String>> acc = new ArrayList<Map<String, String>>(range[1] - range[0]);
+        for (int i = range[0]; i < range[1]; i++) {
+            acc.add(getRowAt(i));
+        }
+        return acc;
+    }
+
+    /**
+     * Returns the rows of the growing season of an experiment: a window
+     * around its first planting event.
+     *
+     * @param experiment the experiment holding the <code>management</code>
+     *        events
+     * @param daysBefore the number of days included before planting
+     * @param daysAfter the number of days included after planting
+     * @return the rows, or an empty list if the experiment has no planting
+     *         date.
+     */
+    public List<Map<String, String>> growingSeason(Map<String, Object> experiment, int daysBefore, int daysAfter) {
+        String planting = findPlantingDate(experiment);
+        if (planting == null) {
+            return new ArrayList<Map<String, String>>();
+        }
+        return window(planting, daysBefore, daysAfter);
+    }
+
+    /**
+     * Returns the date of the first planting event of an experiment.
+     *
+     * @return the date or <code>null</code> if there is no planting event.
+     */
+    public static String findPlantingDate(Map<String, Object> experiment) {
+        return EventIndex.of(experiment).firstDate("planting");
+    }
+
+    /**
+     * Converts a <code>yyyyMMdd</code> date into a day number, the number of
+     * days since 1970-01-01 in the proleptic Gregorian calendar.
+     *
+     * @return the day number or <code>Integer.MIN_VALUE</code> if the value
+     *         is not a valid date.
+     */
+    public static int toEpochDay(String date) {
+        int value = TimeseriesSorter.parseDate(date);
+        if (value < 0) {
+            return Integer.MIN_VALUE;
+        }
+        int year = value / 10000;
+        int month = (value / 100) % 100;
+        int day = value % 100;
+        if (month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)) {
+            return Integer.MIN_VALUE;
+        }
+        return toEpochDay(year, month, day);
+    }
+
+    /**
+     * Converts a valid calendar date into a day number.
+     */
+    static int toEpochDay(int year, int month, int day) {
+        // Days from civil, counting years from March so February is last.
+        int y = (month <= 2) ? year - 1 : year;
+        int era = y / 400;
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    /**
+     * Converts a day number back into a <code>yyyyMMdd</code> date.
+     *
+     * @see #toEpochDay(String)
+     */
+    public static String fromEpochDay(int epochDay) {
+        int value = toDateValue(epochDay);
+        int year = value / 10000;
+        int month = (value / 100) % 100;
+        int day = value % 100;
+        StringBuilder acc = new StringBuilder(8);
+        String y = Integer.toString(year);
+        for (int i = y.length(); i < 4; i++) {
+            acc.append('0');
+        }
+        acc.append(y);
+        acc.append((char) ('0' + month / 10)).append((char) ('0' + month % 10));
+        acc.append((char) ('0' + day / 10)).append((char) ('0' + day % 10));
+        return acc.toString();
+    }
+
+    /**
+     * Converts a day number into a <code>yyyyMMdd</code> number.
+     */
+    static int toDateValue(int epochDay) {
+        int z = epochDay + 719468;
+        int era = (z >= 0 ? z : z - 146096) / 146097;
+        int dayOfEra = z - era * 146097;
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int mp = (5 * dayOfYear + 2) / 153;
+        int day = dayOfYear - (153 * mp + 2) / 5 + 1;
+        int month = mp + (mp < 10 ? 3 : -9);
+        int year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        return year * 10000 + month * 100 + day;
+    }
+
+    private static int daysInMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                boolean leap = (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+                return leap ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    private static int parse(String date) {
+        int day = toEpochDay(date);
+        if (day == Integer.MIN_VALUE) {
+            throw new IllegalArgumentException("Invalid date: " + date);
+        }
+        return day;
+    }
+}
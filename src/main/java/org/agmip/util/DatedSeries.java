@@ -0,0 +1,210 @@
+package org.agmip.util;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A time series of rows keyed by date, such as the observed
+ * <code>timeSeries</code> of an experiment or the daily output of a model,
+ * which can be aligned with another series by date and variable.
+ *
+ * Each variable is parsed once, the first time it is used, into the sorted
+ * day numbers and values of the rows which have a value. Aligning two
+ * series is then a merge join of two sorted arrays:
+ *
+ * <pre>
+ * DatedSeries observed = DatedSeries.forObserved(experiment, true);
+ * DatedSeries simulated = DatedSeries.build(modelOutput, "date");
+ * AlignedSeries lai = observed.align("lai", simulated);
+ * double rmse = lai.getRmse();
+ * </pre>
+ *
+ * A series can be shared between threads.
+ *
+ * @since 1.2
+ */
+public class DatedSeries {
+    private final List<? extends Map<String, String>> rows;
+    private final boolean compressed;
+    private final String dateKey;
+    private final DateIndex index;
+    private final ConcurrentHashMap<String, Column> columns = new ConcurrentHashMap<String, Column>();
+    private volatile Set<String> variables;
+
+    private DatedSeries(List<? extends Map<String, String>> rows, boolean compressed, String dateKey) {
+        this.rows = rows;
+        this.compressed = compressed;
+        this.dateKey = dateKey;
+        this.index = DateIndex.build(new DataListCursor(rows, compressed), dateKey);
+    }
+
+    /**
+     * Builds the series of the observed <code>timeSeries</code> of an
+     * experiment, on <code>date</code>.
+     *
+     * @param experiment the experiment
+     * @param compressed <code>true</code> for a raw experiment (as read),
+     *        <code>false</code> for one returned by
+     *        {@link MapUtil#decompressAll(Map)}; reading decompressed rows as
+     *        compressed would give every blanked observation the value of
+     *        the first row
+     */
+    public static DatedSeries forObserved(Map<String, Object> experiment, boolean compressed) {
+        return new DatedSeries(MapUtil.getBucketView(experiment, "observed").getRawDataList(), compressed, "date");
+    }
+
+    /**
+     * Builds the series of decompressed rows.
+     *
+     * @param rows the rows, which are kept (not copied)
+     * @param dateKey the date variable
+     */
+    public static DatedSeries build(List<? extends Map<String, String>> rows, String dateKey) {
+        return new DatedSeries(rows, false, dateKey);
+    }
+
+    /**
+     * Returns the number of rows with a valid date.
+     */
+    public int size() {
+        return index.size();
+    }
+
+    /**
+     * Returns the variables found in the rows, besides the date.
+     */
+    public Set<String> getVariables() {
+        Set<String> acc = variables;
+        if (acc == null) {
+            LinkedHashSet<String> keys = new LinkedHashSet<String>();
+            DataListCursor cursor = new DataListCursor(rows, compressed);
+            while (cursor.next()) {
+                keys.addAll(cursor.keys());
+            }
+            keys.remove(dateKey);
+            acc = Collections.unmodifiableSet(keys);
+            variables = acc;
+        }
+        return acc;
+    }
+
+    /**
+     * Returns the number of dated values of a variable.
+     */
+    public int count(String variable) {
+        return column(variable).days.length;
+    }
+
+    /**
+     * Pairs the values of a variable in this (observed) series with the
+     * values of the same variable on the same dates in a simulated series.
+     *
+     * @return a new aligned series
+     * @see #align(String, DatedSeries, AlignedSeries)
+     */
+    public AlignedSeries align(String variable, DatedSeries simulated) {
+        return align(variable, simulated, new AlignedSeries(count(variable)));
+    }
+
+    /**
+     * Pairs the values of a variable with a simulated series, refilling an
+     * existing aligned series.
+     *
+     * Dates without a value on either side are skipped. When the simulated
+     * series has several values on a date, the first one is used for every
+     * observed value of that date.
+     *
+     * @return <code>out</code>
+     */
+    public AlignedSeries align(String variable, DatedSeries simulated, AlignedSeries out) {
+        Column other = simulated.column(variable);
+        return align(variable, other.days, other.values, other.days.length, out);
+    }
+
+    /**
+     * Pairs the values of a variable with simulated values held in arrays,
+     * as a model in a calibration loop would produce them.
+     *
+     * @param days the day numbers of the simulated values, sorted
+     * @param values the simulated values, <code>NaN</code> when missing
+     * @param length the number of simulated values
+     * @param out the series to refill
+     * @return <code>out</code>
+     * @see DateIndex#toEpochDay(String)
+     */
+    public AlignedSeries align(String variable, int[] days, double[] values, int length, AlignedSeries out) {
+        Column column = column(variable);
+        out.clear(variable);
+        int j = 0;
+        for (int i = 0; i < column.days.length && j < length; i++) {
+            int day = column.days[i];
+            while (j < length && days[j] < day) {
+                j++;
+            }
+            if (j < length && days[j] == day && values[j] == values[j]) {
+                out.add(day, column.values[i], values[j]);
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Aligns every variable of this series which the simulated series also
+     * has.
+     *
+     * @return the aligned series with at least one pair, by variable
+     */
+    public Map<String, AlignedSeries> alignAll(DatedSeries simulated) {
+        LinkedHashMap<String, AlignedSeries> acc = new LinkedHashMap<String, AlignedSeries>();
+        Set<String> others = simulated.getVariables();
+        for (String variable : getVariables()) {
+            if (others.contains(variable)) {
+                AlignedSeries aligned = align(variable, simulated);
+                if (aligned.size() > 0) {
+                    acc.put(variable, aligned);
+                }
+            }
+        }
+        return acc;
+    }
+
+    private Column column(String variable) {
+        Column column = columns.get(variable);
+        if (column == null) {
+            double[] byRow = new DataListCursor(rows, compressed).toDoubleArray(variable);
+            int[] days = new int[index.size()];
+            double[] values = new double[index.size()];
+            int count = 0;
+            for (int i = 0; i < index.size(); i++) {
+                double value = byRow[index.getRowIndex(i)];
+                if (value == value) {
+                    days[count] = index.getDay(i);
+                    values[count] = value;
+                    count++;
+                }
+            }
+            column = new Column(Arrays.copyOf(days, count), Arrays.copyOf(values, count));
+            columns.put(variable, column);
+        }
+        return column;
+    }
+
+    /**
+     * The dated values of a variable, sorted by date.
+     */
+    private static class Column {
+        private final int[] days;
+        private final double[] values;
+
+        Column(int[] days, double[] values) {
+            this.days = days;
+            this.values = values;
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package org.agmip.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An index of the <code>management</code> events of an experiment, grouped
+ * by <code>event</code> type and sorted by <code>date</code>.
+ *
+ * The index is built in one pass over the events; queries on a type then
+ * use a binary search over its dates, and totals of a variable (such as
+ * the <code>feamn</code> of the fertilizer events) use prefix sums built
+ * the first time the variable is asked for.
+ *
+ * <pre>
+ * EventIndex events = EventIndex.of(experiment);
+ * String planting = events.firstDate("planting");
+ * List&lt;Map&lt;String, String&gt;&gt; irrigations = events.between("irrigation", planting, "19821231");
+ * double nitrogen = events.total("fertilizer", "feamn");
+ * </pre>
+ *
+ * Events without a valid <code>yyyyMMdd</code> date are left out. The
+ * events are not copied and must not be modified. An index can be shared
+ * between threads.
+ *
+ * @since 1.2
+ */
+public class EventIndex {
+    private static final Group EMPTY = new Group(new ArrayList<Map<String, String>>());
+
+    private final LinkedHashMap<String, Group> groups;
+
+    private EventIndex(LinkedHashMap<String, Group> groups) {
+        this.groups = groups;
+    }
+
+    /**
+     * Indexes the events of the <code>management</code> bucket of an
+     * experiment.
+     */
+    public static EventIndex of(Map<String, Object> experiment) {
+        return build(MapUtil.getBucketView(experiment, "management").getRawDataList());
+    }
+
+    /**
+     * Indexes a list of events.
+     */
+    public static EventIndex build(List<? extends Map<String, String>> events) {
+        LinkedHashMap<String, List<Map<String, String>>> byType = new LinkedHashMap<String, List<Map<String, String>>>();
+        for (Map<String, String> event : events) {
+            String type = event.get("event");
+            if (type == null) {
+                continue;
+            }
+            List<Map<String, String>> acc = byType.get(type);
+            if (acc == null) {
+                acc = new ArrayList<Map<String, String>>();
+                byType.put(type, acc);
+            }
+            acc.add(event);
+        }
+        LinkedHashMap<String, Group> groups = new LinkedHashMap<String, Group>();
+        for (Map.Entry<String, List<Map<String, String>>> e : byType.entrySet()) {
+            groups.put(e.getKey(), new Group(e.getValue()));
+        }
+        return new EventIndex(groups);
+    }
+
+    /**
+     * Returns the event types, in the order they first appear.
+     */
+    public Set<String> getTypes() {
+        return Collections.unmodifiableSet(groups.keySet());
+    }
+
+    /**
+     * Returns the number of events of a type.
+     */
+    public int count(String type) {
+        return group(type).index.size();
+    }
+
+    /**
+     * Returns the events of a type, sorted by date.
+     */
+    public List<Map<String, String>> getEvents(String type) {
+        DateIndex index = group(type).index;
+        return rows(index, 0, index.size());
+    }
+
+    /**
+     * Returns the first event of a type.
+     *
+     * @return the event or <code>null</code> if there is none.
+     */
+    public Map<String, String> first(String type) {
+        DateIndex index = group(type).index;
+        return (index.size() == 0) ? null : index.getRowAt(0);
+    }
+
+    /**
+     * Returns the last event of a type.
+     *
+     * @return the event or <code>null</code> if there is none.
+     */
+    public Map<String, String> last(String type) {
+        DateIndex index = group(type).index;
+        return (index.size() == 0) ? null : index.getRowAt(index.size() - 1);
+    }
+
+    /**
+     * Returns the date of the first event of a type, such as the planting
+     * date.
+     *
+     * @return the date or <code>null</code> if there is no such event.
+     */
+    public String firstDate(String type) {
+        return group(type).index.getFirstDate();
+    }
+
+    /**
+     * Returns the first event of a type on or after a date.
+     *
+     * @return the event or <code>null</code> if there is none.
+     */
+    public Map<String, String> next(String type, String date) {
+        DateIndex index = group(type).index;
+        int position = index.lowerBound(toDay(date));
+        return (position < index.size()) ? index.getRowAt(position) : null;
+    }
+
+    /**
+     * Returns the events of a type between two dates, sorted by date.
+     *
+     * @param from the first date (<code>yyyyMMdd</code>), included
+     * @param to the last date (<code>yyyyMMdd</code>), included
+     */
+    public List<Map<String, String>> between(String type, String from, String to) {
+        DateIndex index = group(type).index;
+        int[] range = index.range(toDay(from), toDay(to));
+        return rows(index, range[0], range[1]);
+    }
+
+    /**
+     * Returns the total of a variable over all the events of a type, such
+     * as the nitrogen applied by the <code>fertilizer</code> events
+     * (<code>feamn</code>). Missing or unparsable values count as 0.
+     */
+    public double total(String type, String variable) {
+        double[] sums = group(type).prefixSums(variable);
+        return sums[sums.length - 1];
+    }
+
+    /**
+     * Returns the total of a variable over the events of a type between two
+     * dates.
+     *
+     * @param from the first date (<code>yyyyMMdd</code>), included
+     * @param to the last date (<code>yyyyMMdd</code>), included
+     * @see #total(String, String)
+     */
+    public double total(String type, String variable, String from, String to) {
+        Group group = group(type);
+        int[] range = group.index.range(toDay(from), toDay(to));
+        double[] sums = group.prefixSums(variable);
+        return sums[range[1]] - sums[range[0]];
+    }
+
+    private Group group(String type) {
+        Group group = groups.get(type);
+        return (group == null) ? EMPTY : group;
+    }
+
+    private static List<Map<String, String>> rows(DateIndex index, int start, int end) {
+        ArrayList<Map<String, String>> acc = new ArrayList<Map<String, String>>(end - start);
+        for (int i = start; i < end; i++) {
+            acc.add(index.getRowAt(i));
+        }
+        return acc;
+    }
+
+    private static int toDay(String date) {
+        int day = DateIndex.toEpochDay(date);
+        if (day == Integer.MIN_VALUE) {
+            throw new IllegalArgumentException("Invalid date: " + date);
+        }
+        return day;
+    }
+
+    /**
+     * The events of one type.
+     */
+    private static class Group {
+        private final DateIndex index;
+        private final ConcurrentHashMap<String, double[]> sums = new ConcurrentHashMap<String, double[]>();
+
+        Group(List<Map<String, String>> events) {
+            this.index = DateIndex.build(events, "date");
+        }
+
+        /**
+         * Returns the running totals of a variable: element <code>i</code>
+         * is the total of the first <code>i</code> events.
+         */
+        double[] prefixSums(String variable) {
+            double[] acc = sums.get(variable);
+            if (acc == null) {
+                acc = new double[index.size() + 1];
+                for (int i = 0; i < index.size(); i++) {
+                    acc[i + 1] = acc[i] + parse(index.getRowAt(i).get(variable));
+                }
+                sums.put(variable, acc);
+            }
+            return acc;
+        }
+
+        private static double parse(String value) {
+            if (value == null) {
+                return 0.0;
+            }
+            try {
+                return Helpers.parseDoubleValue(value);
+            } catch (NumberFormatException ex) {
+                return 0.0;
+            }
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package org.agmip.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * The variables extracted from many experiments by an {@link Extractor}.
+ *
+ * Values are kept in a single array, one row per experiment and one column
+ * per variable, and reference the strings of the experiments themselves.
+ *
+ * @since 1.2
+ */
+public class ExtractedTable {
+    private final List<String> columns;
+    private final HashMap<String, Integer> indexes;
+    private final int size;
+    private final String[] values;
+
+    ExtractedTable(List<String> columns, int size, String[] values) {
+        this.columns = columns;
+        this.size = size;
+        this.values = values;
+        this.indexes = new HashMap<String, Integer>();
+        for (int i = 0; i < columns.size(); i++) {
+            indexes.put(columns.get(i), i);
+        }
+    }
+
+    /**
+     * Returns the number of rows (experiments).
+     */
+    public int size() {
+        return size;
+    }
+
+    public List<String> getColumnNames() {
+        return columns;
+    }
+
+    /**
+     * Returns the value of a variable in a row.
+     *
+     * @return the value or <code>null</code> if the experiment has none.
+     */
+    public String get(int row, int column) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row: " + row + ", Size: " + size);
+        }
+        if (column < 0 || column >= columns.size()) {
+            throw new IndexOutOfBoundsException("Column: " + column + ", Columns: " + columns.size());
+        }
+        return values[row * columns.size() + column];
+    }
+
+    /**
+     * Returns the value of a variable in a row.
+     *
+     * @return the value or <code>null</code> if the experiment has none or
+     *         the variable was not extracted.
+     */
+    public String get(int row, String key) {
+        Integer column = indexes.get(key);
+        return (column == null) ? null : get(row, column);
+    }
+
+    /**
+     * Returns every value of a variable, with <code>null</code> for the
+     * experiments which have none.
+     */
+    public String[] getColumn(String key) {
+        Integer column = indexes.get(key);
+        if (column == null) {
+            throw new IllegalArgumentException("Unknown column: " + key);
+        }
+        String[] acc = new String[size];
+        for (int i = 0; i < size; i++) {
+            acc[i] = values[i * columns.size() + column];
+        }
+        return acc;
+    }
+
+    /**
+     * Materializes a row, in the same form as
+     * {@link MapUtil#extract(java.util.Map, java.util.Set)}.
+     */
+    public HashMap<String, String> getRow(int row) {
+        HashMap<String, String> acc = new HashMap<String, String>();
+        for (int i = 0; i < columns.size(); i++) {
+            String value = get(row, i);
+            if (value != null) {
+                acc.put(columns.get(i), value);
+            }
+        }
+        return acc;
+    }
+
+    /**
+     * Materializes every row.
+     */
+    public ArrayList<HashMap<String, String>> toRows() {
+        ArrayList<HashMap<String, String>> acc = new ArrayList<HashMap<String, String>>(size);
+        for (int i = 0; i < size; i++) {
+            acc.add(getRow(i));
+        }
+        return acc;
+    }
+}
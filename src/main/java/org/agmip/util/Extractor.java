@@ -0,0 +1,234 @@
+package org.agmip.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Extracts the same set of variables from many experiments.
+ *
+ * An extractor is built once from the variables to extract. For every
+ * experiment it finds the buckets once and then reads only the requested
+ * values, resolving them with the same precedence as
+ * {@link MapUtil#flattenGlobals(Map)} without copying any bucket, so
+ * {@link #extract(Map)} returns the same map as
+ * {@link MapUtil#extract(Map, java.util.Set)}.
+ *
+ * The values of many experiments are collected into an
+ * {@link ExtractedTable}, optionally in parallel.
+ *
+ * <pre>
+ * Extractor extractor = new Extractor(Arrays.asList("exname", "wst_id", "soil_id"));
+ * ExtractedTable table = extractor.extractPackage(pkg, executor);
+ * </pre>
+ *
+ * Extractors are immutable and can be shared between threads.
+ *
+ * @since 1.2
+ */
+@SuppressWarnings("unchecked")
+public class Extractor {
+    private static final int CHUNK_SIZE = 1024;
+
+    private final String[] keys;
+    private final List<String> columns;
+
+    /**
+     * @param keys the variables to extract, in the order of the table
+     *        columns
+     */
+    public Extractor(Collection<String> keys) {
+        KeyDictionary dictionary = KeyDictionary.getDefault();
+        this.keys = new String[keys.size()];
+        int i = 0;
+        for (String key : keys) {
+            this.keys[i++] = dictionary.canonicalize(key);
+        }
+        ArrayList<String> names = new ArrayList<String>(keys.size());
+        Collections.addAll(names, this.keys);
+        this.columns = Collections.unmodifiableList(names);
+    }
+
+    /**
+     * Returns the extracted variables, in column order.
+     */
+    public List<String> getKeys() {
+        return columns;
+    }
+
+    /**
+     * Extracts the variables of a single experiment.
+     *
+     * @return the variables which have a value
+     */
+    public HashMap<String, String> extract(Map<String, Object> experiment) {
+        String[] values = new String[keys.length];
+        new Resolver().fill(experiment, null, null, values, 0);
+        HashMap<String, String> acc = new HashMap<String, String>();
+        for (int i = 0; i < keys.length; i++) {
+            if (values[i] != null) {
+                acc.put(keys[i], values[i]);
+            }
+        }
+        return acc;
+    }
+
+    /**
+     * Extracts the variables of every experiment.
+     *
+     * @param experiments experiments with their buckets embedded
+     * @return one row per experiment, in the same order
+     */
+    public ExtractedTable extractAll(List<? extends Map<String, Object>> experiments) {
+        String[] values = new String[experiments.size() * keys.length];
+        fill(experiments, null, null, values, 0, experiments.size());
+        return new ExtractedTable(columns, experiments.size(), values);
+    }
+
+    /**
+     * Extracts the variables of every experiment, splitting the experiments
+     * into chunks run on the executor.
+     *
+     * @see #extractAll(List)
+     * @throws InterruptedException if interrupted while waiting for the
+     *         chunks
+     */
+    public ExtractedTable extractAll(List<? extends Map<String, Object>> experiments, ExecutorService executor) throws InterruptedException {
+        return extractInChunks(experiments, null, null, executor);
+    }
+
+    /**
+     * Extracts the variables of every experiment of a data package. The
+     * weather and soil an experiment references by <code>wst_id</code> and
+     * <code>soil_id</code> are read from the package, as if it had been
+     * flattened with {@link MapUtil#flatPack(HashMap)}; they take precedence
+     * over the other buckets.
+     *
+     * @param pkg the data package
+     * @return one row per experiment, in package order
+     */
+    public ExtractedTable extractPackage(Map<String, Object> pkg) {
+        ArrayList<HashMap<String, Object>> experiments = MapUtil.getRawPackageContents(pkg, "experiments");
+        String[] values = new String[experiments.size() * keys.length];
+        fill(experiments, weathers(pkg), soils(pkg), values, 0, experiments.size());
+        return new ExtractedTable(columns, experiments.size(), values);
+    }
+
+    /**
+     * Extracts the variables of every experiment of a data package in
+     * parallel.
+     *
+     * @see #extractPackage(Map)
+     * @throws InterruptedException if interrupted while waiting for the
+     *         chunks
+     */
+    public ExtractedTable extractPackage(Map<String, Object> pkg, ExecutorService executor) throws InterruptedException {
+        return extractInChunks(MapUtil.getRawPackageContents(pkg, "experiments"), weathers(pkg), soils(pkg), executor);
+    }
+
+    private ExtractedTable extractInChunks(final List<? extends Map<String, Object>> experiments,
+            final HashMap<String, HashMap<String, Object>> weathers, final HashMap<String, HashMap<String, Object>> soils,
+            ExecutorService executor) throws InterruptedException {
+        final int size = experiments.size();
+        final String[] values = new String[size * keys.length];
+        ArrayList<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        for (int start = 0; start < size; start += CHUNK_SIZE) {
+            final int from = start;
+            final int to = Math.min(size, start + CHUNK_SIZE);
+            tasks.add(new Callable<Void>() {
+                public Void call() {
+                    // Every chunk writes to its own rows of the array.
+                    fill(experiments, weathers, soils, values, from, to);
+                    return null;
+                }
+            });
+        }
+        MapUtil.invokeAllInOrder(executor, tasks);
+        return new ExtractedTable(columns, size, values);
+    }
+
+    private void fill(List<? extends Map<String, Object>> experiments, HashMap<String, HashMap<String, Object>> weathers,
+            HashMap<String, HashMap<String, Object>> soils, String[] values, int from, int to) {
+        Resolver resolver = new Resolver();
+        for (int row = from; row < to; row++) {
+            Map<String, Object> experiment = experiments.get(row);
+            Map<String, Object> weather = null;
+            Map<String, Object> soil = null;
+            if (weathers != null) {
+                weather = weathers.get(MapUtil.getValueOr(experiment, "wst_id", ""));
+                soil = soils.get(MapUtil.getValueOr(experiment, "soil_id", ""));
+            }
+            resolver.fill(experiment, weather, soil, values, row * keys.length);
+        }
+    }
+
+    private static HashMap<String, HashMap<String, Object>> weathers(Map<String, Object> pkg) {
+        return MapUtil.indexPackageContents(MapUtil.getRawPackageContents(pkg, "weathers"), "wst_id");
+    }
+
+    private static HashMap<String, HashMap<String, Object>> soils(Map<String, Object> pkg) {
+        return MapUtil.indexPackageContents(MapUtil.getRawPackageContents(pkg, "soils"), "soil_id");
+    }
+
+    /**
+     * Resolves the variables of one experiment after another, reusing the
+     * same bucket buffer. Not thread safe.
+     */
+    private class Resolver {
+        private Map<String, Object>[] buckets = new Map[8];
+
+        void fill(Map<String, Object> experiment, Map<String, Object> weather, Map<String, Object> soil, String[] values, int offset) {
+            int count = 0;
+            for (Map.Entry<String, Object> entry : experiment.entrySet()) {
+                if (entry.getValue() instanceof Map) {
+                    String name = entry.getKey();
+                    if ((weather != null && name.equals("weather")) || (soil != null && name.equals("soil"))) {
+                        continue;
+                    }
+                    count = add(count, (Map<String, Object>) entry.getValue());
+                }
+            }
+            if (weather != null) {
+                count = add(count, weather);
+            }
+            if (soil != null) {
+                count = add(count, soil);
+            }
+
+            for (int k = 0; k < keys.length; k++) {
+                String value = null;
+                for (int b = count - 1; b >= 0 && value == null; b--) {
+                    Object v = buckets[b].get(keys[k]);
+                    if (v instanceof String) {
+                        value = (String) v;
+                    }
+                }
+                if (value == null) {
+                    Object v = experiment.get(keys[k]);
+                    if (v instanceof String) {
+                        value = (String) v;
+                    }
+                }
+                values[offset + k] = value;
+            }
+            for (int b = 0; b < count; b++) {
+                buckets[b] = null;
+            }
+        }
+
+        private int add(int count, Map<String, Object> bucket) {
+            if (count == buckets.length) {
+                Map<String, Object>[] grown = new Map[count * 2];
+                System.arraycopy(buckets, 0, grown, 0, count);
+                buckets = grown;
+            }
+            buckets[count] = bucket;
+            return count + 1;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package org.agmip.util;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A view of the same values as {@link MapUtil#flattenGlobals(Map)}, resolved
+ * on every lookup instead of being copied into a new map.
+ *
+ * A value is looked up in the buckets of the experiment first (when several
+ * buckets have it, the last one wins, as in <code>flattenGlobals</code>)
+ * and then in its top level values. The experiment itself is never changed:
+ * the first call to a method which modifies the view copies the flattened
+ * values into a map owned by the view.
+ *
+ * The buckets are found on the first lookup, so buckets added to or removed
+ * from the experiment afterwards are not seen. Iterating over the view
+ * builds the flattened map, so views are meant for lookups of a few
+ * variables.
+ *
+ * @since 1.2
+ */
+@SuppressWarnings("unchecked")
+public class GlobalsView extends AbstractMap<String, String> {
+    private final Map<String, Object> experiment;
+    private HashMap<String, String> copy = null;
+    private Map<String, Object>[] buckets = null;
+
+    /**
+     * @param experiment the raw experiment
+     */
+    public GlobalsView(Map<String, Object> experiment) {
+        this.experiment = experiment;
+    }
+
+    @Override
+    public String get(Object key) {
+        if (copy != null) {
+            return copy.get(key);
+        }
+        if (buckets == null) {
+            buckets = findBuckets();
+        }
+        for (int i = buckets.length - 1; i >= 0; i--) {
+            Object v = buckets[i].get(key);
+            if (v instanceof String) {
+                return (String) v;
+            }
+        }
+        Object value = experiment.get(key);
+        return (value instanceof String) ? (String) value : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public String put(String key, String value) {
+        return copy().put(key, value);
+    }
+
+    @Override
+    public String remove(Object key) {
+        return copy().remove(key);
+    }
+
+    @Override
+    public void clear() {
+        copy().clear();
+    }
+
+    @Override
+    public Set<Map.Entry<String, String>> entrySet() {
+        if (copy != null) {
+            return copy.entrySet();
+        }
+        return Collections.unmodifiableSet(MapUtil.flattenGlobals(experiment).entrySet());
+    }
+
+    /**
+     * Returns <code>true</code> once the view has been modified and no longer
+     * reads from the experiment.
+     */
+    public boolean isCopied() {
+        return copy != null;
+    }
+
+    private Map<String, Object>[] findBuckets() {
+        ArrayList<Map<String, Object>> acc = new ArrayList<Map<String, Object>>();
+        for (Object value : experiment.values()) {
+            if (value instanceof Map) {
+                acc.add((Map<String, Object>) value);
+            }
+        }
+        return acc.toArray(new Map[acc.size()]);
+    }
+
+    private HashMap<String, String> copy() {
+        if (copy == null) {
+            copy = MapUtil.flattenGlobals(experiment);
+        }
+        return copy;
+    }
+}
@@ -7,6 +7,16 @@ import org.slf4j.LoggerFactory;
 
 public class Helpers {
 	private static final Logger LOG = LoggerFactory.getLogger(Helpers.class);
+    // Every long with up to 15 digits and every power of ten up to 10^22 is
+    // exact as a double, so a single division is correctly rounded.
+    private static final int MAX_EXACT_DIGITS = 15;
+    private static final double[] POWERS_OF_TEN = new double[23];
+    static {
+        POWERS_OF_TEN[0] = 1.0;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10.0;
+        }
+    }
 	
 	/**
 	 * A more universal way or parsing from String to double.
@@ -22,6 +32,7 @@ public class Helpers {
      * @throws InvalidNumberException
      * @param String the original string to convert
      * @return a Double representing the string.
+     * @see #parseDoubleValue(String)
 	 */
 	public static Double parseDouble(String source) {
         ArrayList<Character> separators = new ArrayList<Character>();
@@ -50,8 +61,8 @@ public class Helpers {
         if (separators.size() > 2) {
             throw new NumberFormatException();
         } 
-        LOG.debug("separators: "+separators.toString());
-        LOG.debug("pieces: "+pieces.toString());
+        LOG.debug("separators: {}", separators);
+        LOG.debug("pieces: {}", pieces);
         if (separators.size() == 0) {
             // There should only be one entry anyways.
             finalVal.append(pieces.get(0).toString());
@@ -72,7 +83,77 @@ public class Helpers {
                 finalVal.append(decimalPiece);
             }
         }
-        LOG.debug("Final value: "+finalVal.toString());
+        LOG.debug("Final value: {}", finalVal);
         return Double.parseDouble(finalVal.toString());
 	}
+
+    /**
+     * Single pass version of {@link #parseDouble(String)} for hot paths.
+     *
+     * Applies exactly the same separator rules, but reads the digits straight
+     * into a <code>long</code> instead of building intermediate strings, and
+     * returns a primitive. Values with more than 15 significant digits or
+     * more than 22 decimals fall back to {@link #parseDouble(String)}.
+     *
+     * @throws NumberFormatException if there are more than 2 different
+     *         separators or no digits around a decimal separator
+     * @param source the original string to convert
+     * @return the value of the string.
+     */
+    public static double parseDoubleValue(String source) {
+        int l = source.length();
+        char firstSeparator = 0;
+        char secondSeparator = 0;
+        int separators = 0;
+        int pieces = 1;
+        int digits = 0;
+        int lastPieceDigits = 0;
+        int significantDigits = 0;
+        long mantissa = 0;
+
+        for (int i = 0; i < l; i++) {
+            char c = source.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits++;
+                lastPieceDigits++;
+                if (mantissa != 0 || c != '0') {
+                    significantDigits++;
+                    if (significantDigits <= MAX_EXACT_DIGITS) {
+                        mantissa = mantissa * 10 + (c - '0');
+                    }
+                }
+            } else if (Character.isDigit(c)) {
+                // Non ASCII digits are never accepted by Double.parseDouble
+                throw new NumberFormatException("For input string: \"" + source + "\"");
+            } else {
+                pieces++;
+                lastPieceDigits = 0;
+                if (separators == 0) {
+                    firstSeparator = c;
+                    separators = 1;
+                } else if (c != firstSeparator && (separators == 1 || c != secondSeparator)) {
+                    if (separators == 2) {
+                        throw new NumberFormatException("For input string: \"" + source + "\"");
+                    }
+                    secondSeparator = c;
+                    separators = 2;
+                }
+            }
+        }
+
+        boolean integer = separators == 0 || (separators == 1 && pieces > 2);
+        if (!integer && digits == 0) {
+            throw new NumberFormatException("For input string: \"" + source + "\"");
+        }
+        if (mantissa == 0) {
+            return 0.0;
+        }
+        if (significantDigits > MAX_EXACT_DIGITS || (!integer && lastPieceDigits >= POWERS_OF_TEN.length)) {
+            return parseDouble(source);
+        }
+        if (integer) {
+            return mantissa;
+        }
+        return mantissa / POWERS_OF_TEN[lastPieceDigits];
+    }
 }
@@ -4,31 +4,114 @@ package org.agmip.util;
  * Simple JSON converter using Jackson
  */
 
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.Scanner;
 
+import org.codehaus.jackson.JsonParseException;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonToken;
 import org.codehaus.jackson.map.ObjectMapper;
 import org.codehaus.jackson.type.TypeReference;
 
+import org.agmip.core.types.DatasetSink;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public class JSONAdapter {
     private static final ObjectMapper mapper = new ObjectMapper();
+    private static final TypeReference<HashMap<String, Object>> MAP_TYPE = new TypeReference<HashMap<String, Object>>() {};
     private static final Logger LOG = LoggerFactory.getLogger(JSONAdapter.class);
 
     public static HashMap<String, Object> fromJSON(String json) throws IOException {
-        return mapper.readValue(json, new TypeReference<HashMap<String, Object>>() {});
-    } 
+        return mapper.readValue(json, MAP_TYPE);
+    }
 
     public static String toJSON(Object obj) throws IOException {
         return mapper.writeValueAsString(obj);
     }
 
     public static HashMap<String, Object> fromJSONFile(String path) throws IOException {
-        String json = new Scanner(new File(path), "UTF-8").useDelimiter("\\A").next();
-        return mapper.readValue(json, new TypeReference<HashMap<String, Object>>() {});
+        // Let Jackson read straight from the file instead of slurping it
+        // into a String first.
+        return mapper.readValue(new File(path), MAP_TYPE);
+    }
+
+    /**
+     * Reads a data package from a file without holding the whole package
+     * in memory.
+     *
+     * @see #streamJSON(InputStream, DatasetSink)
+     * @param path the file to read
+     * @param sink receives every entry of the package
+     * @return the top level values which were not streamed to the sink
+     */
+    public static HashMap<String, Object> streamJSONFile(String path, DatasetSink sink) throws IOException {
+        InputStream in = new BufferedInputStream(new FileInputStream(path));
+        try {
+            return streamJSON(in, sink);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Reads a data package one entry at a time.
+     *
+     * Every object found inside a top level array (such as
+     * <code>experiments</code>, <code>weathers</code> or <code>soils</code>)
+     * is parsed on its own and handed to the sink before the next one is
+     * read, so only a single entry is ever materialized. Any other top level
+     * value is collected and returned once the stream is exhausted.
+     *
+     * The stream is not closed by this method.
+     *
+     * @param in the JSON source
+     * @param sink receives every entry of the package
+     * @return the top level values which were not streamed to the sink
+     */
+    public static HashMap<String, Object> streamJSON(InputStream in, DatasetSink sink) throws IOException {
+        JsonParser parser = mapper.getJsonFactory().createJsonParser(in);
+        parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+        HashMap<String, Object> remainder = new HashMap<String, Object>();
+        try {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException("Expected a JSON object at the top level", parser.getCurrentLocation());
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String key = parser.getCurrentName();
+                if (parser.nextToken() == JsonToken.START_ARRAY) {
+                    ArrayList<Object> others = null;
+                    int count = 0;
+                    JsonToken token;
+                    while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                        if (token == JsonToken.START_OBJECT) {
+                            HashMap<String, Object> entry = mapper.readValue(parser, MAP_TYPE);
+                            sink.accept(key, entry);
+                            count++;
+                        } else {
+                            if (others == null) {
+                                others = new ArrayList<Object>();
+                            }
+                            others.add(mapper.readValue(parser, Object.class));
+                        }
+                    }
+                    if (others != null) {
+                        remainder.put(key, others);
+                    }
+                    LOG.debug("Streamed {} entries from {}", count, key);
+                } else {
+                    remainder.put(key, mapper.readValue(parser, Object.class));
+                }
+            }
+        } finally {
+            parser.close();
+        }
+        return remainder;
     }
 }
@@ -0,0 +1,245 @@
+package org.agmip.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import au.com.bytecode.opencsv.CSVReader;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A thread safe dictionary of variable names, so that every key of the
+ * decoded maps shares a single <code>String</code> instance.
+ *
+ * Jackson already interns the field names of parsed JSON. This dictionary
+ * covers keys built any other way, such as those decoded by
+ * {@link BinaryAdapter} or put by {@link MapUtil.BucketEntry}. The canonical
+ * instance of a key is its interned string, so it is the same instance as
+ * the JSON keys and the string literals used to look values up.
+ *
+ * The shared dictionary is seeded with the ACE variables listed by
+ * ace-lookup and the structural keys of a data package (such as
+ * <code>experiments</code> or <code>dailyWeather</code>). Keys which are not
+ * known yet are added as they are seen, until the dictionary holds
+ * <code>maxSize</code> keys; after that unknown keys are returned as is.
+ *
+ * <pre>
+ * String key = KeyDictionary.getDefault().canonicalize(rawKey);
+ * </pre>
+ *
+ * Hits and misses are only counted for lookups made through a
+ * {@link Lookup}, which parsers open once and flush when done, so the hot
+ * path never updates a counter shared between threads.
+ *
+ * @since 1.2
+ */
+public class KeyDictionary {
+    private static final Logger LOG = LoggerFactory.getLogger(KeyDictionary.class);
+    private static final String[] LOOKUP_FILES = {"/pathfinder.csv", "/obs_pathfinder.csv"};
+    private static final int CODE_QUERY_COLUMN = 4;
+    private static final String[] STRUCTURAL_KEYS = {"experiments", "weathers", "soils",
+        "initial_conditions", "management", "observed", "weather", "soil", "events", "dailyWeather",
+        "soilLayer", "timeSeries", "summary", "data", "event", "date", "w_date", "wst_id", "soil_id",
+        "exname", "trt_name"};
+    private static final KeyDictionary DEFAULT = createDefault();
+
+    private final ConcurrentHashMap<String, String> keys = new ConcurrentHashMap<String, String>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final int maxSize;
+
+    /**
+     * Creates an empty dictionary.
+     *
+     * @param maxSize the maximum number of keys the dictionary will hold
+     */
+    public KeyDictionary(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Returns the dictionary shared by {@link BinaryAdapter} and
+     * {@link MapUtil.BucketEntry}.
+     */
+    public static KeyDictionary getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Returns the shared instance of a key, adding it to the dictionary if
+     * there is still room for it. The lookup is not counted.
+     *
+     * @param key the key to look up, may be <code>null</code>
+     * @return the shared instance, or <code>key</code> itself if it is not
+     *         in the (full) dictionary.
+     */
+    public String canonicalize(String key) {
+        if (key == null) {
+            return null;
+        }
+        String canonical = keys.get(key);
+        return (canonical == null) ? insert(key) : canonical;
+    }
+
+    /**
+     * Adds a key to the dictionary.
+     *
+     * @return the shared instance of the key
+     */
+    public String add(String key) {
+        return canonicalize(key);
+    }
+
+    /**
+     * Opens a counted lookup for a single parser.
+     */
+    public Lookup lookup() {
+        return new Lookup();
+    }
+
+    /**
+     * Checks whether a key is in the dictionary.
+     */
+    public boolean contains(String key) {
+        return keys.containsKey(key);
+    }
+
+    /**
+     * Returns the number of keys in the dictionary.
+     */
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * Returns the number of flushed lookups which found the key in the
+     * dictionary.
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Returns the number of flushed lookups of keys which were not in the
+     * dictionary yet.
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Returns the share of lookups which found the key in the dictionary,
+     * or 0 if there was no lookup yet.
+     */
+    public double getHitRate() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return (total == 0) ? 0.0 : (double) h / total;
+    }
+
+    /**
+     * Resets the hit and miss counters.
+     */
+    public void resetStats() {
+        hits.set(0);
+        misses.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return "KeyDictionary{size=" + size() + ", hits=" + getHits() + ", misses=" + getMisses()
+            + ", hitRate=" + getHitRate() + "}";
+    }
+
+    /**
+     * Canonicalizes keys on behalf of a single parser, counting its hits and
+     * misses locally until {@link #flush()} adds them to the dictionary.
+     * Not thread safe.
+     */
+    public final class Lookup {
+        private long lookupHits;
+        private long lookupMisses;
+
+        private Lookup() {}
+
+        /**
+         * @see KeyDictionary#canonicalize(String)
+         */
+        public String canonicalize(String key) {
+            if (key == null) {
+                return null;
+            }
+            String canonical = keys.get(key);
+            if (canonical != null) {
+                lookupHits++;
+                return canonical;
+            }
+            lookupMisses++;
+            return insert(key);
+        }
+
+        /**
+         * Adds the counts so far to the statistics of the dictionary.
+         */
+        public void flush() {
+            if (lookupHits != 0) {
+                hits.addAndGet(lookupHits);
+                lookupHits = 0;
+            }
+            if (lookupMisses != 0) {
+                misses.addAndGet(lookupMisses);
+                lookupMisses = 0;
+            }
+        }
+    }
+
+    private String insert(String key) {
+        if (size.get() >= maxSize) {
+            return key;
+        }
+        String interned = key.intern();
+        String previous = keys.putIfAbsent(interned, interned);
+        if (previous != null) {
+            return previous;
+        }
+        size.incrementAndGet();
+        return interned;
+    }
+
+    private static KeyDictionary createDefault() {
+        KeyDictionary dictionary = new KeyDictionary(1 << 16);
+        for (String key : STRUCTURAL_KEYS) {
+            dictionary.add(key);
+        }
+        for (String file : LOOKUP_FILES) {
+            InputStream in = KeyDictionary.class.getResourceAsStream(file);
+            if (in == null) {
+                LOG.warn("Unable to find {} to seed the key dictionary", file);
+                continue;
+            }
+            try {
+                CSVReader reader = new CSVReader(new InputStreamReader(in, "UTF-8"));
+                try {
+                    String[] line = reader.readNext();
+                    while ((line = reader.readNext()) != null) {
+                        if (line.length > CODE_QUERY_COLUMN && !line[CODE_QUERY_COLUMN].trim().equals("")) {
+                            dictionary.add(line[CODE_QUERY_COLUMN].trim().toLowerCase());
+                        }
+                    }
+                } finally {
+                    reader.close();
+                }
+            } catch (IOException ex) {
+                LOG.warn("Unable to seed the key dictionary from {}: {}", file, ex.getMessage());
+            }
+        }
+        LOG.debug("Seeded the key dictionary with {} keys", dictionary.size());
+        return dictionary;
+    }
+}
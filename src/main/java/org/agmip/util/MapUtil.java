@@ -1,11 +1,28 @@
 package org.agmip.util;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import com.google.common.base.Optional;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+import org.agmip.core.types.DatasetSink;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -40,24 +57,58 @@ public class MapUtil {
      */
 
     private static final Logger LOG = LoggerFactory.getLogger(MapUtil.class);
+    private static final HashMap<String, String> BUCKET_NESTED_KEYS = new HashMap<String, String>();
+    private static final HashMap<String, String> PACKAGE_NESTED_KEYS = new HashMap<String, String>();
+    private static final String[] PACKAGE_CONTENTS = {"experiments", "weathers", "soils"};
+    static {
+        BUCKET_NESTED_KEYS.put("initial_conditions", "soilLayer");
+        BUCKET_NESTED_KEYS.put("soil", "soilLayer");
+        BUCKET_NESTED_KEYS.put("weather", "dailyWeather");
+        BUCKET_NESTED_KEYS.put("management", "events");
+        BUCKET_NESTED_KEYS.put("observed", "timeSeries");
+
+        PACKAGE_NESTED_KEYS.put("weathers", "dailyWeather");
+        PACKAGE_NESTED_KEYS.put("soils", "soilLayer");
+    }
     public static class BucketEntry {
         private HashMap<String, String> values = new HashMap();
         private ArrayList<HashMap<String, String>> dataList = new ArrayList();
         private HashMap<String, BucketEntry> subBuckets = new HashMap();
+        private boolean compressed = false;
 
         public BucketEntry(HashMap<String, Object> m) {
+            this(m, false);
+        }
+
+        /**
+         * Creates a bucket entry, optionally deferring the decompression of
+         * its data list.
+         *
+         * A lazy entry only decompresses its data list the first time
+         * {@link #getDataList()} is called, so entries which are only used
+         * for their top level values never pay for it. The rows can also be
+         * read without being decompressed through {@link #cursor()}.
+         *
+         * @param m the raw bucket
+         * @param lazy <code>true</code> to defer decompression
+         */
+        public BucketEntry(HashMap<String, Object> m, boolean lazy) {
             for(Map.Entry<String, Object> entry : m.entrySet()) {
                 String key = entry.getKey();
                 Object value = entry.getValue();
 
-                if( key.equals("data") || key.equals("soilLayer") || key.equals("dailyWeather") || key.equals("events") || key.equals("timeSeries") ) {
+                if( isDataListKey(key) ) {
                     this.dataList = (ArrayList<HashMap<String, String>>) value;
                     if(! key.equals("events") ) {
-                        this.parseDataList();
+                        if (lazy) {
+                            this.compressed = true;
+                        } else {
+                            this.parseDataList();
+                        }
                     }
                 } else {
                     try {
-                        values.put(key, (String) value);
+                        values.put(KeyDictionary.getDefault().canonicalize(key), (String) value);
                     } catch (ClassCastException ex) {
                         LOG.error("VALUE INSERTION ERROR ["+key+"]: "+value.toString());
                     }
@@ -85,9 +136,25 @@ public class MapUtil {
          * @return the nested values associated with this bucket.
          */
         public ArrayList<HashMap<String, String>> getDataList() {
+            if (compressed) {
+                parseDataList();
+            }
             return dataList;
         }
 
+        /**
+         * Returns a cursor over the nested values associated with this bucket.
+         *
+         * Values inherited from the first row are resolved as they are
+         * requested, so iterating a lazy entry through the cursor never
+         * creates the decompressed rows.
+         *
+         * @return a cursor positioned before the first row.
+         */
+        public DataListCursor cursor() {
+            return new DataListCursor(dataList, compressed);
+        }
+
         /**
          * Decompresses data from a data list and populates the local dataList
          * variable.
@@ -96,10 +163,12 @@ public class MapUtil {
         public void parseDataList() {
             ArrayList<HashMap<String, String>> acc = new ArrayList();
             HashMap<String, String> stickyMap = new HashMap();
+            KeyDictionary.Lookup keys = KeyDictionary.getDefault().lookup();
             for(Map<String, String> sourceMap : dataList) {
                 if( acc.size() == 0 ) {
+                    // Every merged row reuses these keys, so share them once.
                     for(Map.Entry<String, String> e : sourceMap.entrySet()) {
-                        stickyMap.put(e.getKey(), sourceMap.get(e.getKey()));
+                        stickyMap.put(keys.canonicalize(e.getKey()), e.getValue());
                     }
                     acc.add(stickyMap);
                 } else {
@@ -115,7 +184,9 @@ public class MapUtil {
                     acc.add(mergedMap);
                 }
             }
+            keys.flush();
             this.dataList = acc;
+            this.compressed = false;
         }
     }
 
@@ -127,27 +198,233 @@ public class MapUtil {
      */
     public static HashMap<String, Object> decompressAll(Map<String, Object> m) {
         HashMap<String, Object> all = new HashMap(getGlobalValues(m));
-        HashMap<String, String> translate = new HashMap();
-        translate.put("initial_conditions", "soilLayer");
-        translate.put("soil", "soilLayer");
-        translate.put("weather", "dailyWeather");
-        translate.put("management", "events");
-        translate.put("observed", "timeSeries");
-
         ArrayList<String> buckets = listBucketNames(m);
         for(String bucket : buckets) {
-            BucketEntry b = getBucket(m, bucket);
-            HashMap<String, Object> sub = new HashMap<String, Object>(b.getValues());
-            String nestedKey = translate.get(bucket);
-            if (nestedKey == null) {
-                nestedKey = "data";
+            all.put(bucket, decompressBucket(m, bucket));
+        }
+        return all;
+    }
+
+    /**
+     * Decompresses every bucket of the map concurrently.
+     *
+     * The result is the same as {@link #decompressAll(Map)}; each bucket is
+     * decompressed by its own task on the provided executor.
+     *
+     * @param m The source map from the translator or database
+     * @param executor runs the decompression of each bucket
+     * @return an uncompressed version of the map.
+     * @throws InterruptedException if interrupted while waiting for the buckets
+     */
+    public static HashMap<String, Object> decompressAll(final Map<String, Object> m, ExecutorService executor) throws InterruptedException {
+        HashMap<String, Object> all = new HashMap(getGlobalValues(m));
+        ArrayList<String> buckets = listBucketNames(m);
+        ArrayList<Callable<HashMap<String, Object>>> tasks = new ArrayList<Callable<HashMap<String, Object>>>(buckets.size());
+        for (final String bucket : buckets) {
+            tasks.add(new Callable<HashMap<String, Object>>() {
+                public HashMap<String, Object> call() {
+                    return decompressBucket(m, bucket);
+                }
+            });
+        }
+        List<HashMap<String, Object>> decompressed = invokeAllInOrder(executor, tasks);
+        for (int i = 0; i < buckets.size(); i++) {
+            all.put(buckets.get(i), decompressed.get(i));
+        }
+        return all;
+    }
+
+    /**
+     * Decompresses every entry of a data package.
+     *
+     * Experiments are decompressed with {@link #decompressAll(Map)}, while
+     * weathers and soils have their <code>dailyWeather</code> and
+     * <code>soilLayer</code> lists decompressed. Any other top level value is
+     * copied as is.
+     *
+     * @param pkg the data package
+     * @return an uncompressed copy of the package.
+     */
+    public static HashMap<String, Object> decompressPackage(Map<String, Object> pkg) {
+        HashMap<String, Object> all = new HashMap<String, Object>(pkg);
+        for (String content : PACKAGE_CONTENTS) {
+            if (pkg.containsKey(content)) {
+                ArrayList<HashMap<String, Object>> entries = getRawPackageContents(pkg, content);
+                ArrayList<HashMap<String, Object>> acc = new ArrayList<HashMap<String, Object>>(entries.size());
+                for (HashMap<String, Object> entry : entries) {
+                    acc.add(decompressPackageEntry(entry, content));
+                }
+                all.put(content, acc);
+            }
+        }
+        return all;
+    }
+
+    /**
+     * Decompresses every entry of a data package concurrently.
+     *
+     * The result is the same as {@link #decompressPackage(Map)}, entries are
+     * kept in their original order.
+     *
+     * @param pkg the data package
+     * @param executor runs the decompression of each entry
+     * @return an uncompressed copy of the package.
+     * @throws InterruptedException if interrupted while waiting for the entries
+     */
+    public static HashMap<String, Object> decompressPackage(Map<String, Object> pkg, ExecutorService executor) throws InterruptedException {
+        HashMap<String, Object> all = new HashMap<String, Object>(pkg);
+        for (final String content : PACKAGE_CONTENTS) {
+            if (pkg.containsKey(content)) {
+                ArrayList<HashMap<String, Object>> entries = getRawPackageContents(pkg, content);
+                ArrayList<Callable<HashMap<String, Object>>> tasks = new ArrayList<Callable<HashMap<String, Object>>>(entries.size());
+                for (final HashMap<String, Object> entry : entries) {
+                    tasks.add(new Callable<HashMap<String, Object>>() {
+                        public HashMap<String, Object> call() {
+                            return decompressPackageEntry(entry, content);
+                        }
+                    });
+                }
+                all.put(content, new ArrayList<HashMap<String, Object>>(invokeAllInOrder(executor, tasks)));
+            }
+        }
+        return all;
+    }
+
+    /**
+     * Compresses a decompressed data list into the sticky format read by
+     * {@link BucketEntry#parseDataList()}.
+     *
+     * The first row is kept as is. In every other row, a value equal to the
+     * one in the first row is left out (it will be inherited), and a
+     * variable of the first row which the row does not have is written as
+     * <code>""</code> (so it is not inherited). Variables which are not in
+     * the first row cannot be expressed in this format and are dropped, as
+     * they would be by the decompression.
+     *
+     * @param rows the decompressed rows
+     * @return the compressed rows
+     */
+    public static ArrayList<HashMap<String, String>> compressDataList(List<? extends Map<String, String>> rows) {
+        ArrayList<HashMap<String, String>> acc = new ArrayList<HashMap<String, String>>(rows.size());
+        if (rows.isEmpty()) {
+            return acc;
+        }
+        Map<String, String> first = rows.get(0);
+        acc.add(new HashMap<String, String>(first));
+        for (int i = 1; i < rows.size(); i++) {
+            Map<String, String> row = rows.get(i);
+            HashMap<String, String> compressed = new HashMap<String, String>();
+            for (Map.Entry<String, String> e : first.entrySet()) {
+                String value = row.get(e.getKey());
+                if (value == null) {
+                    compressed.put(e.getKey(), "");
+                } else if (!value.equals(e.getValue())) {
+                    compressed.put(e.getKey(), value);
+                }
+            }
+            acc.add(compressed);
+        }
+        return acc;
+    }
+
+    /**
+     * Compresses the data lists of every bucket, the reverse of
+     * {@link #decompressAll(Map)}. Events are left as they are, since they
+     * are never compressed.
+     *
+     * @param m an uncompressed experiment
+     * @return a compressed copy of the experiment.
+     */
+    public static HashMap<String, Object> compressAll(Map<String, Object> m) {
+        HashMap<String, Object> all = new HashMap<String, Object>(m);
+        for (String bucket : listBucketNames(m)) {
+            all.put(bucket, compressEntry(getRawBucket(m, bucket)));
+        }
+        return all;
+    }
+
+    /**
+     * Compresses every entry of a data package, the reverse of
+     * {@link #decompressPackage(Map)}.
+     *
+     * @param pkg an uncompressed data package
+     * @return a compressed copy of the package.
+     */
+    public static HashMap<String, Object> compressPackage(Map<String, Object> pkg) {
+        HashMap<String, Object> all = new HashMap<String, Object>(pkg);
+        for (String content : PACKAGE_CONTENTS) {
+            if (pkg.containsKey(content)) {
+                ArrayList<HashMap<String, Object>> entries = getRawPackageContents(pkg, content);
+                ArrayList<HashMap<String, Object>> acc = new ArrayList<HashMap<String, Object>>(entries.size());
+                for (HashMap<String, Object> entry : entries) {
+                    acc.add(content.equals("experiments") ? compressAll(entry) : compressEntry(entry));
+                }
+                all.put(content, acc);
             }
-            sub.put(nestedKey, b.getDataList());
-            all.put(bucket, sub);
         }
         return all;
     }
 
+    private static HashMap<String, Object> compressEntry(Map<String, Object> entry) {
+        HashMap<String, Object> acc = new HashMap<String, Object>(entry);
+        for (Map.Entry<String, Object> e : entry.entrySet()) {
+            if (isDataListKey(e.getKey()) && !e.getKey().equals("events") && e.getValue() instanceof List) {
+                acc.put(e.getKey(), compressDataList((List<HashMap<String, String>>) e.getValue()));
+            }
+        }
+        return acc;
+    }
+
+    private static HashMap<String, Object> decompressBucket(Map<String, Object> m, String bucket) {
+        BucketEntry b = getBucket(m, bucket);
+        HashMap<String, Object> sub = new HashMap<String, Object>(b.getValues());
+        String nestedKey = BUCKET_NESTED_KEYS.get(bucket);
+        if (nestedKey == null) {
+            nestedKey = "data";
+        }
+        sub.put(nestedKey, b.getDataList());
+        return sub;
+    }
+
+    static HashMap<String, Object> decompressPackageEntry(HashMap<String, Object> entry, String content) {
+        if (content.equals("experiments")) {
+            return decompressAll(entry);
+        }
+        BucketEntry b = new BucketEntry(entry);
+        HashMap<String, Object> acc = new HashMap<String, Object>(b.getValues());
+        String nestedKey = PACKAGE_NESTED_KEYS.get(content);
+        if (entry.containsKey(nestedKey)) {
+            acc.put(nestedKey, b.getDataList());
+        }
+        return acc;
+    }
+
+    static <T> List<T> invokeAllInOrder(ExecutorService executor, List<Callable<T>> tasks) throws InterruptedException {
+        ArrayList<T> acc = new ArrayList<T>(tasks.size());
+        for (Future<T> future : executor.invokeAll(tasks)) {
+            try {
+                acc.add(future.get());
+            } catch (ExecutionException ex) {
+                Throwable cause = ex.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                } else if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new RuntimeException(cause);
+            }
+        }
+        return acc;
+    }
+
+
+    /**
+     * Returns <code>true</code> if the key holds the nested data list of a
+     * bucket.
+     */
+    public static boolean isDataListKey(String key) {
+        return key.equals("data") || key.equals("soilLayer") || key.equals("dailyWeather") || key.equals("events") || key.equals("timeSeries");
+    }
 
     public static <K,V> V getObjectOr(Map<K,V> m, K key, V orValue ) {
         Optional<V> opt = Optional.fromNullable(m.get(key));
@@ -182,8 +459,37 @@ public class MapUtil {
     }
 
     public static BucketEntry getBucket(Map<String, Object> m, String key) {
+        return getBucket(m, key, false);
+    }
+
+    /**
+     * Returns a bucket, optionally deferring the decompression of its data
+     * list until it is used.
+     *
+     * @see BucketEntry#BucketEntry(HashMap, boolean)
+     */
+    public static BucketEntry getBucket(Map<String, Object> m, String key, boolean lazy) {
         HashMap<String, Object> b = (HashMap<String,Object>) getObjectOr(m, key, new HashMap<String, Object>());
-        return new BucketEntry(b);
+        return new BucketEntry(b, lazy);
+    }
+
+    /**
+     * Returns a bucket whose data list is stored column by column.
+     *
+     * @see ColumnarBucketEntry
+     */
+    public static ColumnarBucketEntry getColumnarBucket(Map<String, Object> m, String key) {
+        return new ColumnarBucketEntry(getRawBucket(m, key));
+    }
+
+    /**
+     * Returns a view of the top level values of a bucket which reads from
+     * the raw bucket instead of copying it.
+     *
+     * @see BucketView
+     */
+    public static BucketView getBucketView(Map<String, Object> m, String key) {
+        return new BucketView(getRawBucket(m, key));
     }
 
     public static HashMap<String, Object> getRawBucket(Map<String, Object> m, String key) {
@@ -228,22 +534,35 @@ public class MapUtil {
         Iterator iter = buckets.iterator();
         
         while(iter.hasNext()) {
-            BucketEntry b = getBucket(m, (String) iter.next());
+            // Only the top level values are needed, never decompress the data lists.
+            BucketEntry b = getBucket(m, (String) iter.next(), true);
             globals.putAll(b.getValues());
         }
 
         return globals;
     }
 
+    /**
+     * Returns a view of the values returned by {@link #flattenGlobals(Map)}
+     * which resolves every lookup against the experiment instead of copying
+     * its values.
+     *
+     * @see GlobalsView
+     */
+    public static GlobalsView getGlobalsView(Map<String, Object> m) {
+        return new GlobalsView(m);
+    }
+
     public static HashMap<String, String> extract(Map<String,Object> m, Set<String> s) {
         HashMap<String, String> extracted = new HashMap<String,String>();
-        HashMap<String, String> flatMap = flattenGlobals(m);
+        GlobalsView flatMap = getGlobalsView(m);
 
         Iterator i = s.iterator();
         while(i.hasNext()) {
             String key = (String) i.next();
-            if( flatMap.containsKey(key) ) {
-                extracted.put(key, flatMap.get(key));
+            String value = flatMap.get(key);
+            if( value != null ) {
+                extracted.put(key, value);
             }
         }
 
@@ -251,64 +570,435 @@ public class MapUtil {
     }
 
     public static ArrayList<HashMap<String, Object>> flatPack(HashMap<String, Object> bundledData) {
-    
-    	
-        ArrayList<HashMap<String, Object>> ikea = new ArrayList<HashMap<String, Object>>();
-        ArrayList<HashMap<String, Object>> weathers = getRawPackageContents(bundledData, "weathers");
-        ArrayList<HashMap<String, Object>> soils = getRawPackageContents(bundledData, "soils");
+        return flatPack(bundledData, null, null);
+    }
+
+    /**
+     * Flattens a data package, looking up the weather stations and soils
+     * which are not in the package itself in shared caches.
+     *
+     * Stations and soils are attached raw whether they come from the
+     * package or a cache, so the experiments can be decompressed with
+     * {@link #decompressAll(Map)} either way.
+     *
+     * @param bundledData the data package
+     * @param weatherCache weather stations by <code>wst_id</code>, may be
+     *        <code>null</code>
+     * @param soilCache soils by <code>soil_id</code>, may be
+     *        <code>null</code>
+     * @return every experiment with its weather and soil attached
+     */
+    public static ArrayList<HashMap<String, Object>> flatPack(HashMap<String, Object> bundledData, DatasetCache weatherCache, DatasetCache soilCache) {
         ArrayList<HashMap<String, Object>> experiments = getRawPackageContents(bundledData, "experiments");
-        ArrayList<String> foundWeathers = new ArrayList<String>();
-        ArrayList<String> foundSoils = new ArrayList<String>();
+        ArrayList<HashMap<String, Object>> ikea = new ArrayList<HashMap<String, Object>>(experiments.size());
 
         LOG.debug("ENTERING FLATPACK()");
-        
-        for (HashMap<String, Object> wst : weathers) {
-            String wst_id = getValueOr(wst, "wst_id", "");
-            if (!wst_id.equals("")) {
-                foundWeathers.add(wst_id);
+
+        Flattener flattener = new Flattener(bundledData, weatherCache, soilCache);
+        for (HashMap<String, Object> experiment : experiments) {
+            ikea.add(flattener.flatten(experiment));
+        }
+        LOG.debug("LEAVING FLATPACK()");
+		return ikea;
+    }
+
+    /**
+     * Flattens the experiments of a data package one at a time, as they are
+     * requested.
+     *
+     * Only the weather and soil indexes are built up front, so the memory
+     * used does not grow with the number of experiments consumed.
+     *
+     * @param bundledData the data package
+     * @return the flattened experiments, in package order
+     */
+    public static Iterator<HashMap<String, Object>> flatPackIterator(HashMap<String, Object> bundledData) {
+        return flatPackIterator(bundledData, null, null);
+    }
+
+    /**
+     * Flattens the experiments of a data package one at a time, looking up
+     * the weather stations and soils which are not in the package itself in
+     * shared caches.
+     *
+     * @see #flatPack(HashMap, DatasetCache, DatasetCache)
+     * @param bundledData the data package
+     * @param weatherCache weather stations by <code>wst_id</code>, may be
+     *        <code>null</code>
+     * @param soilCache soils by <code>soil_id</code>, may be
+     *        <code>null</code>
+     * @return the flattened experiments, in package order
+     */
+    public static Iterator<HashMap<String, Object>> flatPackIterator(HashMap<String, Object> bundledData, DatasetCache weatherCache, DatasetCache soilCache) {
+        final Iterator<HashMap<String, Object>> experiments = getRawPackageContents(bundledData, "experiments").iterator();
+        final Flattener flattener = new Flattener(bundledData, weatherCache, soilCache);
+        return new Iterator<HashMap<String, Object>>() {
+            public boolean hasNext() {
+                return experiments.hasNext();
+            }
+
+            public HashMap<String, Object> next() {
+                return flattener.flatten(experiments.next());
             }
+
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * Flattens the experiments of a data package and hands them to a sink
+     * as <code>experiments</code> entries, in package order.
+     *
+     * @param bundledData the data package
+     * @param sink receives every flattened experiment
+     * @return the number of experiments
+     * @throws IOException if the sink fails
+     */
+    public static int flatPack(HashMap<String, Object> bundledData, DatasetSink sink) throws IOException {
+        return flatPack(bundledData, null, null, sink);
+    }
+
+    /**
+     * Flattens the experiments of a data package and hands them to a sink,
+     * looking up the weather stations and soils which are not in the
+     * package itself in shared caches.
+     *
+     * @see #flatPack(HashMap, DatasetCache, DatasetCache)
+     * @return the number of experiments
+     * @throws IOException if the sink fails
+     */
+    public static int flatPack(HashMap<String, Object> bundledData, DatasetCache weatherCache, DatasetCache soilCache, DatasetSink sink) throws IOException {
+        int count = 0;
+        Iterator<HashMap<String, Object>> experiments = flatPackIterator(bundledData, weatherCache, soilCache);
+        while (experiments.hasNext()) {
+            sink.accept("experiments", experiments.next());
+            count++;
         }
+        return count;
+    }
 
-        for (HashMap<String, Object> soil : soils) {
-            String soil_id = getValueOr(soil, "soil_id", "");
-            if (!soil_id.equals("")) {
-                foundSoils.add(soil_id);
+    /**
+     * Flattens the experiments of a data package and hands them to a sink
+     * concurrently.
+     *
+     * Every experiment is flattened and passed to the sink by a task on the
+     * executor, so the sink must be thread safe and receives the experiments
+     * in no particular order. At most <code>maxInFlight</code> experiments
+     * are flattened and not yet accepted at any time. Once the sink fails,
+     * no more experiments are submitted and the first failure is rethrown
+     * after the running tasks are done.
+     *
+     * @param bundledData the data package
+     * @param sink receives every flattened experiment
+     * @param executor runs the tasks
+     * @param maxInFlight the maximum number of experiments being handled at
+     *        once, at least 1
+     * @return the number of experiments accepted by the sink
+     * @throws IllegalArgumentException if <code>maxInFlight</code> is less
+     *         than 1
+     * @throws IOException if the sink fails
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public static int flatPack(HashMap<String, Object> bundledData, DatasetSink sink, ExecutorService executor, int maxInFlight) throws IOException, InterruptedException {
+        return flatPack(bundledData, null, null, sink, executor, maxInFlight);
+    }
+
+    /**
+     * Flattens the experiments of a data package and hands them to a sink
+     * concurrently, looking up the weather stations and soils which are not
+     * in the package itself in shared caches.
+     *
+     * @see #flatPack(HashMap, DatasetSink, ExecutorService, int)
+     * @see #flatPack(HashMap, DatasetCache, DatasetCache)
+     */
+    public static int flatPack(HashMap<String, Object> bundledData, DatasetCache weatherCache, DatasetCache soilCache, final DatasetSink sink, ExecutorService executor, final int maxInFlight) throws IOException, InterruptedException {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("maxInFlight must be at least 1, not " + maxInFlight);
+        }
+        final Flattener flattener = new Flattener(bundledData, weatherCache, soilCache);
+        final Semaphore permits = new Semaphore(maxInFlight);
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        final AtomicInteger count = new AtomicInteger();
+
+        try {
+            for (final HashMap<String, Object> experiment : getRawPackageContents(bundledData, "experiments")) {
+                permits.acquire();
+                if (failure.get() != null) {
+                    permits.release();
+                    break;
+                }
+                try {
+                    executor.execute(new Runnable() {
+                        public void run() {
+                            try {
+                                if (failure.get() == null) {
+                                    sink.accept("experiments", flattener.flatten(experiment));
+                                    count.incrementAndGet();
+                                }
+                            } catch (Throwable t) {
+                                failure.compareAndSet(null, t);
+                            } finally {
+                                permits.release();
+                            }
+                        }
+                    });
+                } catch (RuntimeException ex) {
+                    permits.release();
+                    throw ex;
+                }
             }
+        } finally {
+            // Wait for the running tasks.
+            permits.acquireUninterruptibly(maxInFlight);
+            permits.release(maxInFlight);
         }
 
-        for (HashMap<String, Object> experiment : experiments) {
+        Throwable t = failure.get();
+        if (t instanceof IOException) {
+            throw (IOException) t;
+        } else if (t instanceof RuntimeException) {
+            throw (RuntimeException) t;
+        } else if (t instanceof Error) {
+            throw (Error) t;
+        } else if (t != null) {
+            throw new IOException(t);
+        }
+        return count.get();
+    }
+
+    /**
+     * Attaches the weather and soil of a package to its experiments. Only
+     * reads the indexes once built, so it can be shared between threads.
+     */
+    private static class Flattener {
+        private final HashMap<String, HashMap<String, Object>> foundWeathers;
+        private final HashMap<String, HashMap<String, Object>> foundSoils;
+        private final DatasetCache weatherCache;
+        private final DatasetCache soilCache;
+
+        Flattener(HashMap<String, Object> bundledData, DatasetCache weatherCache, DatasetCache soilCache) {
+            this.foundWeathers = indexPackageContents(getRawPackageContents(bundledData, "weathers"), "wst_id");
+            this.foundSoils = indexPackageContents(getRawPackageContents(bundledData, "soils"), "soil_id");
+            this.weatherCache = weatherCache;
+            this.soilCache = soilCache;
+        }
+
+        HashMap<String, Object> flatten(HashMap<String, Object> experiment) {
             HashMap<String, Object> newExp = new HashMap<String, Object>(experiment);
             String wst_id = getValueOr(experiment, "wst_id", "");
             String soil_id = getValueOr(experiment, "soil_id", "");
 
-
             if (!wst_id.equals("")) {
-                int w_ref = foundWeathers.indexOf(wst_id);
-                if (w_ref != -1) {
-                    newExp.put("weather", weathers.get(w_ref));
+                HashMap<String, Object> w_ref = foundWeathers.get(wst_id);
+                if (w_ref == null && weatherCache != null) {
+                    w_ref = weatherCache.find(wst_id);
+                }
+                if (w_ref != null) {
+                    newExp.put("weather", w_ref);
                 }
             }
 
             if (!soil_id.equals("")) {
-                int s_ref = foundSoils.indexOf(soil_id);
-                if (s_ref != -1) {
-                    newExp.put("soil", soils.get(s_ref));
+                HashMap<String, Object> s_ref = foundSoils.get(soil_id);
+                if (s_ref == null && soilCache != null) {
+                    s_ref = soilCache.find(soil_id);
+                }
+                if (s_ref != null) {
+                    newExp.put("soil", s_ref);
                 }
             }
-            
-            ikea.add(newExp);
+            return newExp;
+        }
+    }
+
+    /**
+     * Indexes package contents (such as weathers or soils) by an ID
+     * variable. When an ID is used more than once, the first entry wins.
+     *
+     * @param contents the package contents to index
+     * @param idKey the variable holding the ID (<code>wst_id</code>,
+     *        <code>soil_id</code>)
+     * @return the entries keyed by their ID
+     */
+    public static HashMap<String, HashMap<String, Object>> indexPackageContents(ArrayList<HashMap<String, Object>> contents, String idKey) {
+        HashMap<String, HashMap<String, Object>> index = new HashMap<String, HashMap<String, Object>>(contents.size() * 4 / 3 + 1);
+        for (HashMap<String, Object> entry : contents) {
+            String id = getValueOr(entry, idKey, "");
+            if (!id.equals("") && !index.containsKey(id)) {
+                index.put(id, entry);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Bundles flattened experiments like {@link #bundle(ArrayList)}, but
+     * tells weather stations and soils apart by their content instead of
+     * their ID.
+     *
+     * Entries with the same content (ignoring their ID) are collapsed into
+     * the first one, and the experiments which referenced a collapsed entry
+     * have their <code>wst_id</code> or <code>soil_id</code> changed to the
+     * ID of the kept entry. When entries with different contents share an
+     * ID, the first one is kept and the ID is reported as a conflict.
+     *
+     * @param flatData the flattened experiments
+     * @param report collects the duplicates and conflicts found
+     * @return the data package
+     */
+    public static HashMap<String, ArrayList<HashMap<String, Object>>> bundle(ArrayList<HashMap<String, Object>> flatData, BundleReport report) {
+        HashMap<String, ArrayList<HashMap<String, Object>>> bigBox = new HashMap<String, ArrayList<HashMap<String, Object>>>();
+        ArrayList<HashMap<String, Object>> experiments = new ArrayList<HashMap<String, Object>>(flatData.size());
+        ContentIndex weathers = new ContentIndex("weathers", "wst_id", report);
+        ContentIndex soils = new ContentIndex("soils", "soil_id", report);
+
+        for (HashMap<String, Object> item : flatData) {
+            if (item.get("weather") instanceof HashMap) {
+                String wst_id = weathers.add((HashMap<String, Object>) item.get("weather"));
+                if (wst_id != null) {
+                    item.put("wst_id", wst_id);
+                }
+            }
+            if (item.get("soil") instanceof HashMap) {
+                String soil_id = soils.add((HashMap<String, Object>) item.get("soil"));
+                if (soil_id != null) {
+                    item.put("soil_id", soil_id);
+                }
+            }
+            item.remove("weather");
+            item.remove("soil");
+            experiments.add(item);
+        }
+        bigBox.put("experiments", experiments);
+        bigBox.put("soils", soils.kept);
+        bigBox.put("weathers", weathers.kept);
+        return bigBox;
+    }
+
+    /**
+     * Computes a fingerprint of the content of an entry, such as a weather
+     * station or a soil.
+     *
+     * Keys are hashed in sorted order, so two entries with the same values
+     * have the same fingerprint whatever their map implementation. Lists
+     * (<code>dailyWeather</code>, <code>soilLayer</code>...) are hashed row
+     * by row, as they are stored: a compressed and an uncompressed copy of
+     * the same rows do not match.
+     *
+     * @param entry the entry
+     * @param idKey a variable left out of the fingerprint (usually the ID of
+     *        the entry), may be <code>null</code>
+     * @return a 128 bit murmur3 hash
+     */
+    public static HashCode fingerprint(Map<String, Object> entry, String idKey) {
+        Hasher hasher = Hashing.murmur3_128().newHasher();
+        hashMap(hasher, entry, idKey);
+        return hasher.hash();
+    }
+
+    private static void hashValue(Hasher hasher, Object value) {
+        if (value instanceof String) {
+            hasher.putByte((byte) 1);
+            hashString(hasher, (String) value);
+        } else if (value instanceof Map) {
+            hasher.putByte((byte) 2);
+            hashMap(hasher, (Map<String, Object>) value, null);
+        } else if (value instanceof List) {
+            List<Object> list = (List<Object>) value;
+            hasher.putByte((byte) 3);
+            hasher.putInt(list.size());
+            for (Object item : list) {
+                hashValue(hasher, item);
+            }
+        } else if (value == null) {
+            hasher.putByte((byte) 0);
+        } else {
+            hasher.putByte((byte) 4);
+            hashString(hasher, value.toString());
+        }
+    }
+
+    private static void hashMap(Hasher hasher, Map<String, Object> m, String skip) {
+        String[] keys = m.keySet().toArray(new String[m.size()]);
+        Arrays.sort(keys);
+        hasher.putInt((skip != null && m.containsKey(skip)) ? keys.length - 1 : keys.length);
+        for (String key : keys) {
+            if (!key.equals(skip)) {
+                hashString(hasher, key);
+                hashValue(hasher, m.get(key));
+            }
+        }
+    }
+
+    private static void hashString(Hasher hasher, String value) {
+        // The length keeps "ab" + "c" apart from "a" + "bc".
+        hasher.putInt(value.length());
+        hasher.putString(value);
+    }
+
+    /**
+     * The weather stations or soils kept by a content aware bundle.
+     */
+    private static class ContentIndex {
+        private final String content;
+        private final String idKey;
+        private final BundleReport report;
+        private final ArrayList<HashMap<String, Object>> kept = new ArrayList<HashMap<String, Object>>();
+        private final HashMap<String, HashCode> hashesById = new HashMap<String, HashCode>();
+        private final HashMap<HashCode, String> idsByHash = new HashMap<HashCode, String>();
+        // Flattened experiments share the same maps, hash each of them once.
+        private final IdentityHashMap<HashMap<String, Object>, String> seen = new IdentityHashMap<HashMap<String, Object>, String>();
+
+        ContentIndex(String content, String idKey, BundleReport report) {
+            this.content = content;
+            this.idKey = idKey;
+            this.report = report;
+        }
+
+        /**
+         * @return the ID the experiment should reference, or
+         *         <code>null</code> if the entry has no ID.
+         */
+        String add(HashMap<String, Object> entry) {
+            String resolved = seen.get(entry);
+            if (resolved != null) {
+                return resolved;
+            }
+            if (!(entry.get(idKey) instanceof String)) {
+                return null;
+            }
+            String id = (String) entry.get(idKey);
+            HashCode hash = fingerprint(entry, idKey);
+            String keptId = idsByHash.get(hash);
+            if (keptId != null) {
+                if (!keptId.equals(id)) {
+                    report.addDuplicate(content, id, keptId);
+                }
+                resolved = keptId;
+            } else if (hashesById.containsKey(id)) {
+                LOG.warn("Conflicting {} found for {} {}, keeping the first one", new Object[] {content, idKey, id});
+                report.addConflict(content, id);
+                resolved = id;
+            } else {
+                hashesById.put(id, hash);
+                idsByHash.put(hash, id);
+                kept.add(entry);
+                resolved = id;
+            }
+            seen.put(entry, resolved);
+            return resolved;
         }
-        LOG.debug("LEAVING FLATPACK()");
-		return ikea;
     }
 
     public static HashMap<String, ArrayList<HashMap<String, Object>>> bundle(ArrayList<HashMap<String, Object>> flatData) {
         HashMap<String, ArrayList<HashMap<String, Object>>> bigBox = new HashMap<String, ArrayList<HashMap<String, Object>>>();
-        ArrayList<HashMap<String, Object>> experiments = new ArrayList<HashMap<String, Object>>();
+        ArrayList<HashMap<String, Object>> experiments = new ArrayList<HashMap<String, Object>>(flatData.size());
         ArrayList<HashMap<String, Object>> weathers = new ArrayList<HashMap<String, Object>>();
         ArrayList<HashMap<String, Object>> soils = new ArrayList<HashMap<String, Object>>();
-        ArrayList<String> foundWeathers = new ArrayList<String>();
-        ArrayList<String> foundSoils = new ArrayList<String>();
+        HashSet<String> foundWeathers = new HashSet<String>();
+        HashSet<String> foundSoils = new HashSet<String>();
 
 
 
@@ -317,8 +1007,7 @@ public class MapUtil {
                 HashMap<String, Object> w_ref = (HashMap<String, Object>) item.get("weather");
                 if (w_ref.containsKey("wst_id")) {
                     String wst_id = (String) w_ref.get("wst_id");
-                    if (! foundWeathers.contains(wst_id)) {
-                        foundWeathers.add(wst_id);
+                    if (foundWeathers.add(wst_id)) {
                         weathers.add(w_ref);
                     }
                 }
@@ -328,8 +1017,7 @@ public class MapUtil {
                 HashMap<String, Object> s_ref = (HashMap<String, Object>) item.get("soil");
                 if (s_ref.containsKey("soil_id")) {
                     String soil_id = (String) s_ref.get("soil_id");
-                    if (! foundSoils.contains(soil_id)) {
-                        foundSoils.add(soil_id);
+                    if (foundSoils.add(soil_id)) {
                         soils.add(s_ref);
                     }
                 }
@@ -0,0 +1,225 @@
+package org.agmip.util;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The layers of a <code>soilLayer</code> list, sorted by the depth of their
+ * bottom (<code>sllb</code> for a soil, <code>icbl</code> for the initial
+ * conditions).
+ *
+ * Layer bottoms are parsed once into a sorted <code>double[]</code>, and
+ * every variable the first time it is used, so looking up a depth is a
+ * binary search and re-layering onto the layers of a model only walks the
+ * two grids:
+ *
+ * <pre>
+ * SoilProfile profile = SoilProfile.forSoil(MapUtil.getRawBucket(experiment, "soil"), true);
+ * double[] grid = {10, 20, 40, 80, 160};
+ * double[] dul = new double[grid.length];
+ * profile.relayer("sldul", grid, dul);
+ * </pre>
+ *
+ * Layers without a valid bottom are left out. A profile can be shared
+ * between threads; queries do not allocate once the variable is parsed.
+ *
+ * @since 1.2
+ */
+public class SoilProfile {
+    private final List<? extends Map<String, String>> rows;
+    private final boolean compressed;
+    private final double[] bottoms;
+    private final int[] layers;
+    private final ConcurrentHashMap<String, double[]> columns = new ConcurrentHashMap<String, double[]>();
+
+    private SoilProfile(List<? extends Map<String, String>> rows, boolean compressed, String depthKey) {
+        this.rows = rows;
+        this.compressed = compressed;
+        double[] byRow = new DataListCursor(rows, compressed).toDoubleArray(depthKey);
+        int[] order = new int[byRow.length];
+        int count = 0;
+        for (int i = 0; i < byRow.length; i++) {
+            if (byRow[i] >= 0.0) {
+                // Profiles have a handful of layers, usually sorted already.
+                int j = count++;
+                while (j > 0 && byRow[order[j - 1]] > byRow[i]) {
+                    order[j] = order[j - 1];
+                    j--;
+                }
+                order[j] = i;
+            }
+        }
+        this.layers = Arrays.copyOf(order, count);
+        this.bottoms = new double[count];
+        for (int i = 0; i < count; i++) {
+            bottoms[i] = byRow[layers[i]];
+        }
+    }
+
+    /**
+     * Builds the profile of a soil, on <code>sllb</code>.
+     *
+     * @param soil the soil bucket or package entry
+     * @param compressed <code>true</code> if its layers are raw (as read),
+     *        <code>false</code> if they were decompressed already; reading
+     *        decompressed layers as compressed would give every layer
+     *        missing a value the value of the top layer
+     */
+    public static SoilProfile forSoil(Map<String, Object> soil, boolean compressed) {
+        return new SoilProfile(new BucketView(soil).getRawDataList(), compressed, "sllb");
+    }
+
+    /**
+     * Builds the profile of an initial conditions bucket, on
+     * <code>icbl</code>.
+     *
+     * @param initialConditions the bucket
+     * @param compressed whether its layers are raw, see
+     *        {@link #forSoil(Map, boolean)}
+     */
+    public static SoilProfile forInitialConditions(Map<String, Object> initialConditions, boolean compressed) {
+        return new SoilProfile(new BucketView(initialConditions).getRawDataList(), compressed, "icbl");
+    }
+
+    /**
+     * Builds the profile of decompressed layers.
+     *
+     * @param layers the layers, which are kept (not copied)
+     * @param depthKey the variable holding the bottom of a layer
+     */
+    public static SoilProfile build(List<? extends Map<String, String>> layers, String depthKey) {
+        return new SoilProfile(layers, false, depthKey);
+    }
+
+    /**
+     * Returns the number of layers.
+     */
+    public int size() {
+        return bottoms.length;
+    }
+
+    /**
+     * Returns the depth of the bottom of the deepest layer, or 0 if there is
+     * no layer.
+     */
+    public double getDepth() {
+        return (bottoms.length == 0) ? 0.0 : bottoms[bottoms.length - 1];
+    }
+
+    /**
+     * Returns the depth of the top of a layer.
+     */
+    public double getTop(int layer) {
+        return (layer == 0) ? 0.0 : bottoms[layer - 1];
+    }
+
+    /**
+     * Returns the depth of the bottom of a layer.
+     */
+    public double getBottom(int layer) {
+        return bottoms[layer];
+    }
+
+    /**
+     * Returns the layer holding a depth: the first layer whose bottom is at
+     * or below it.
+     *
+     * @return the layer or -1 if the depth is below the profile.
+     */
+    public int layerAt(double depth) {
+        int low = 0;
+        int high = bottoms.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (bottoms[mid] < depth) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return (low == bottoms.length) ? -1 : low;
+    }
+
+    /**
+     * Returns the value of a variable at a depth.
+     *
+     * @return the value, or <code>NaN</code> if the layer has no value or the
+     *         depth is below the profile.
+     */
+    public double getValue(String variable, double depth) {
+        int layer = layerAt(depth);
+        return (layer < 0) ? Double.NaN : column(variable)[layer];
+    }
+
+    /**
+     * Returns the values of a variable by layer, from the top, with
+     * <code>NaN</code> for missing (or unparsable) values. The array is
+     * shared and must not be modified.
+     */
+    public double[] column(String variable) {
+        double[] values = columns.get(variable);
+        if (values == null) {
+            double[] byRow = new DataListCursor(rows, compressed).toDoubleArray(variable);
+            values = new double[layers.length];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = byRow[layers[i]];
+            }
+            columns.put(variable, values);
+        }
+        return values;
+    }
+
+    /**
+     * Re-layers a variable onto another grid of layers: every target layer
+     * gets the mean of the profile layers it overlaps, weighted by the
+     * thickness of the overlap.
+     *
+     * Layers without a value do not count. The part of a target layer below
+     * the profile takes the value of the deepest layer; a target layer
+     * without any value gets <code>NaN</code>.
+     *
+     * @param variable the variable to re-layer
+     * @param targetBottoms the bottoms of the target layers, sorted from the
+     *        top
+     * @param out receives the value of every target layer
+     */
+    public void relayer(String variable, double[] targetBottoms, double[] out) {
+        if (out.length < targetBottoms.length) {
+            throw new IllegalArgumentException("The output holds " + out.length + " layers, "
+                + targetBottoms.length + " are needed");
+        }
+        double[] values = column(variable);
+        int layer = 0;
+        double top = 0.0;
+        for (int t = 0; t < targetBottoms.length; t++) {
+            double bottom = targetBottoms[t];
+            double weighted = 0.0;
+            double thickness = 0.0;
+            // Skip the layers above the target layer.
+            while (layer < bottoms.length && bottoms[layer] <= top) {
+                layer++;
+            }
+            int i = layer;
+            while (i < bottoms.length && getTop(i) < bottom) {
+                double overlap = Math.min(bottoms[i], bottom) - Math.max(getTop(i), top);
+                if (overlap > 0.0 && values[i] == values[i]) {
+                    weighted += overlap * values[i];
+                    thickness += overlap;
+                }
+                i++;
+            }
+            if (bottom > getDepth() && bottoms.length > 0) {
+                double last = values[bottoms.length - 1];
+                double below = bottom - Math.max(top, getDepth());
+                if (last == last) {
+                    weighted += below * last;
+                    thickness += below;
+                }
+            }
+            out[t] = (thickness > 0.0) ? weighted / thickness : Double.NaN;
+            top = bottom;
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package org.agmip.util;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A level of a dataset bound by {@link VariableSchema#bind}: its string
+ * values, already parsed according to the type of their variable, and its
+ * nested records.
+ *
+ * Numeric values are parsed once when the record is bound, and dates are
+ * held as day numbers (see {@link DateIndex#toEpochDay(String)}), so
+ * reading them does not parse or allocate. The original strings are kept.
+ * Records are immutable and can be shared between threads.
+ *
+ * @since 1.2
+ */
+public class TypedRecord {
+    private final Layout layout;
+    private final String[] raw;
+    private final double[] numbers;
+    private final LinkedHashMap<String, Object> children;
+
+    TypedRecord(Layout layout, String[] raw, double[] numbers, LinkedHashMap<String, Object> children) {
+        this.layout = layout;
+        this.raw = raw;
+        this.numbers = numbers;
+        this.children = children;
+    }
+
+    /**
+     * Returns the variables of the record, sorted.
+     */
+    public List<String> getVariables() {
+        return Collections.unmodifiableList(Arrays.asList(layout.keys));
+    }
+
+    public boolean has(String variable) {
+        return layout.indexOf(variable) >= 0;
+    }
+
+    /**
+     * Returns the type of a variable of the record.
+     *
+     * @return the type or <code>null</code> if the record does not have the
+     *         variable.
+     */
+    public VariableSchema.Type getType(String variable) {
+        int i = layout.indexOf(variable);
+        return (i < 0) ? null : layout.types[i];
+    }
+
+    /**
+     * Returns the original value of a variable.
+     *
+     * @return the value or <code>null</code> if the record does not have the
+     *         variable.
+     */
+    public String getString(String variable) {
+        int i = layout.indexOf(variable);
+        return (i < 0) ? null : raw[i];
+    }
+
+    /**
+     * Returns the value of a numeric variable.
+     *
+     * @return the value, or <code>NaN</code> if it is missing, unparsable or
+     *         the variable is not numeric.
+     */
+    public double getDouble(String variable) {
+        int i = layout.indexOf(variable);
+        return (i < 0 || layout.types[i] != VariableSchema.Type.NUMERIC) ? Double.NaN : numbers[i];
+    }
+
+    /**
+     * Returns the value of a numeric variable, or a default value when
+     * {@link #getDouble(String)} would return <code>NaN</code>.
+     */
+    public double getDouble(String variable, double defaultValue) {
+        double value = getDouble(variable);
+        return (value == value) ? value : defaultValue;
+    }
+
+    /**
+     * Returns the day number of a date variable.
+     *
+     * @return the day number, or <code>Integer.MIN_VALUE</code> if it is
+     *         missing, invalid or the variable is not a date.
+     */
+    public int getDate(String variable) {
+        int i = layout.indexOf(variable);
+        if (i < 0 || layout.types[i] != VariableSchema.Type.DATE || numbers[i] != numbers[i]) {
+            return Integer.MIN_VALUE;
+        }
+        return (int) numbers[i];
+    }
+
+    /**
+     * Returns the names of the nested records and lists of records.
+     */
+    public Set<String> getChildren() {
+        if (children == null) {
+            return Collections.emptySet();
+        }
+        return Collections.unmodifiableSet(children.keySet());
+    }
+
+    /**
+     * Returns a nested record, such as the <code>weather</code> of an
+     * experiment.
+     *
+     * @return the record or <code>null</code> if there is none.
+     */
+    public TypedRecord getRecord(String key) {
+        Object child = (children == null) ? null : children.get(key);
+        return (child instanceof TypedRecord) ? (TypedRecord) child : null;
+    }
+
+    /**
+     * Returns a nested list of records, such as the
+     * <code>dailyWeather</code> of a weather.
+     *
+     * @return the records, or an empty list if there are none.
+     */
+    @SuppressWarnings("unchecked")
+    public List<TypedRecord> getRecords(String key) {
+        Object child = (children == null) ? null : children.get(key);
+        if (child instanceof List) {
+            return Collections.unmodifiableList((List<TypedRecord>) child);
+        }
+        return Collections.emptyList();
+    }
+
+    @Override
+    public String toString() {
+        return "TypedRecord{variables=" + getVariables() + ", children=" + getChildren() + "}";
+    }
+
+    /**
+     * The sorted variables of a record and their types, shared by the
+     * records with the same variables.
+     */
+    static class Layout {
+        private final String[] keys;
+        private final VariableSchema.Type[] types;
+
+        Layout(String[] keys, VariableSchema.Type[] types) {
+            this.keys = keys;
+            this.types = types;
+        }
+
+        VariableSchema.Type getType(int index) {
+            return types[index];
+        }
+
+        int indexOf(String key) {
+            return (key == null) ? -1 : Arrays.binarySearch(keys, key);
+        }
+    }
+}
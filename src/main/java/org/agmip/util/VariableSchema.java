@@ -0,0 +1,209 @@
+package org.agmip.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import au.com.bytecode.opencsv.CSVReader;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The types of the ACE variables, as defined by ace-lookup, and the binding
+ * of datasets to {@link TypedRecord}s.
+ *
+ * A variable is a {@link Type#DATE} when its unit or data type is
+ * <code>date</code>, a {@link Type#CODE} when its unit is
+ * <code>code</code>, a {@link Type#TEXT} when it is <code>text</code> (or
+ * has no unit) and a {@link Type#NUMERIC} otherwise. Variables which are
+ * not defined are text.
+ *
+ * <pre>
+ * TypedRecord experiment = VariableSchema.getDefault().bind(MapUtil.decompressAll(raw));
+ * double lat = experiment.getDouble("fl_lat");
+ * </pre>
+ *
+ * @since 1.2
+ */
+@SuppressWarnings("unchecked")
+public class VariableSchema {
+    private static final Logger LOG = LoggerFactory.getLogger(VariableSchema.class);
+    private static final String[] LOOKUP_FILES = {"/pathfinder.csv", "/obs_pathfinder.csv"};
+    private static final int CODE_QUERY_COLUMN = 4;
+    private static final int UNIT_COLUMN = 8;
+    private static final int DATA_TYPE_COLUMN = 9;
+    private static final int MAX_LAYOUTS = 4096;
+    private static final VariableSchema DEFAULT = createDefault();
+
+    /**
+     * The type of a variable.
+     */
+    public enum Type {
+        NUMERIC, DATE, CODE, TEXT
+    }
+
+    private final HashMap<String, Type> types = new HashMap<String, Type>();
+    private final ConcurrentHashMap<List<String>, TypedRecord.Layout> layouts = new ConcurrentHashMap<List<String>, TypedRecord.Layout>();
+
+    /**
+     * Creates a schema with the given variable types.
+     */
+    public VariableSchema(Map<String, Type> types) {
+        this.types.putAll(types);
+    }
+
+    /**
+     * Returns the schema of the ACE variables listed by ace-lookup.
+     */
+    public static VariableSchema getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Returns the type of a variable, {@link Type#TEXT} if it is not defined.
+     */
+    public Type getType(String variable) {
+        Type type = types.get(variable);
+        return (type == null) ? Type.TEXT : type;
+    }
+
+    /**
+     * Binds a decompressed dataset: every string value is parsed according
+     * to the type of its variable, every map becomes a nested record and
+     * every list of maps a list of records. Other values are left out.
+     *
+     * @param data a decompressed experiment, weather or soil
+     * @return the typed record, to be kept in place of the dataset
+     */
+    public TypedRecord bind(Map<String, Object> data) {
+        ArrayList<String> keys = new ArrayList<String>();
+        LinkedHashMap<String, Object> children = null;
+        for (Map.Entry<String, Object> e : data.entrySet()) {
+            Object value = e.getValue();
+            if (value instanceof String) {
+                keys.add(e.getKey());
+            } else if (value instanceof Map) {
+                if (children == null) {
+                    children = new LinkedHashMap<String, Object>();
+                }
+                children.put(e.getKey(), bind((Map<String, Object>) value));
+            } else if (value instanceof List) {
+                ArrayList<TypedRecord> records = new ArrayList<TypedRecord>();
+                for (Object item : (List<Object>) value) {
+                    if (item instanceof Map) {
+                        records.add(bind((Map<String, Object>) item));
+                    }
+                }
+                if (children == null) {
+                    children = new LinkedHashMap<String, Object>();
+                }
+                children.put(e.getKey(), records);
+            }
+        }
+        String[] sorted = keys.toArray(new String[keys.size()]);
+        Arrays.sort(sorted);
+        TypedRecord.Layout layout = layout(sorted);
+        String[] raw = new String[sorted.length];
+        double[] numbers = new double[sorted.length];
+        for (int i = 0; i < sorted.length; i++) {
+            raw[i] = (String) data.get(sorted[i]);
+            numbers[i] = parse(layout.getType(i), raw[i]);
+        }
+        return new TypedRecord(layout, raw, numbers, children);
+    }
+
+    /**
+     * Returns the shared layout of a set of keys, so the rows of a data list
+     * only hold their values.
+     */
+    private TypedRecord.Layout layout(String[] sorted) {
+        List<String> key = Arrays.asList(sorted);
+        TypedRecord.Layout layout = layouts.get(key);
+        if (layout == null) {
+            Type[] keyTypes = new Type[sorted.length];
+            for (int i = 0; i < sorted.length; i++) {
+                keyTypes[i] = getType(sorted[i]);
+            }
+            layout = new TypedRecord.Layout(sorted, keyTypes);
+            if (layouts.size() < MAX_LAYOUTS) {
+                TypedRecord.Layout previous = layouts.putIfAbsent(key, layout);
+                if (previous != null) {
+                    layout = previous;
+                }
+            }
+        }
+        return layout;
+    }
+
+    private static double parse(Type type, String value) {
+        switch (type) {
+            case NUMERIC:
+                try {
+                    return Helpers.parseDoubleValue(value);
+                } catch (NumberFormatException ex) {
+                    return Double.NaN;
+                }
+            case DATE:
+                int day = DateIndex.toEpochDay(value);
+                return (day == Integer.MIN_VALUE) ? Double.NaN : day;
+            default:
+                return Double.NaN;
+        }
+    }
+
+    private static Type typeOf(String unit, String dataType) {
+        unit = unit.trim().toLowerCase();
+        dataType = dataType.trim().toLowerCase();
+        if (unit.equals("date") || dataType.equals("date")) {
+            return Type.DATE;
+        } else if (unit.equals("code")) {
+            return Type.CODE;
+        } else if (unit.equals("") || unit.equals("text") || dataType.equals("text") || dataType.equals("memo")) {
+            return Type.TEXT;
+        }
+        return Type.NUMERIC;
+    }
+
+    private static VariableSchema createDefault() {
+        HashMap<String, Type> types = new HashMap<String, Type>();
+        types.put("date", Type.DATE);
+        types.put("event", Type.CODE);
+        for (String file : LOOKUP_FILES) {
+            InputStream in = VariableSchema.class.getResourceAsStream(file);
+            if (in == null) {
+                LOG.warn("Unable to find {} to load the variable types", file);
+                continue;
+            }
+            try {
+                CSVReader reader = new CSVReader(new InputStreamReader(in, "UTF-8"));
+                try {
+                    String[] line = reader.readNext();
+                    while ((line = reader.readNext()) != null) {
+                        if (line.length <= DATA_TYPE_COLUMN || line[CODE_QUERY_COLUMN].trim().equals("")) {
+                            continue;
+                        }
+                        String variable = line[CODE_QUERY_COLUMN].trim().toLowerCase();
+                        // Some variables are listed more than once, the first definition wins.
+                        if (!types.containsKey(variable)) {
+                            types.put(variable, typeOf(line[UNIT_COLUMN], line[DATA_TYPE_COLUMN]));
+                        }
+                    }
+                } finally {
+                    reader.close();
+                }
+            } catch (IOException ex) {
+                LOG.warn("Unable to load the variable types from {}: {}", file, ex.getMessage());
+            }
+        }
+        LOG.debug("Loaded the types of {} variables", types.size());
+        return new VariableSchema(types);
+    }
+}
@@ -0,0 +1,331 @@
+package org.agmip.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Aggregations over the <code>dailyWeather</code> of a weather station.
+ *
+ * The rows are sorted by date once, and every variable is parsed the first
+ * time it is used into a <code>double[]</code> in date order
+ * (<code>NaN</code> for missing values), so summaries over many windows
+ * never parse a string twice.
+ *
+ * <pre>
+ * WeatherSeries series = WeatherSeries.of(MapUtil.getBucket(experiment, "weather"));
+ * double rain = series.summarize("rain", "19820301", "19820531").getSum();
+ * double gdd = series.growingDegreeDays("19820301", "19820731", 8.0, 34.0);
+ * </pre>
+ *
+ * A series can be shared between threads.
+ *
+ * @since 1.2
+ */
+public class WeatherSeries {
+    private final List<? extends Map<String, String>> rows;
+    private final boolean compressed;
+    private final DateIndex index;
+    private final ConcurrentHashMap<String, double[]> columns = new ConcurrentHashMap<String, double[]>();
+
+    private WeatherSeries(List<? extends Map<String, String>> rows, boolean compressed, DateIndex index) {
+        this.rows = rows;
+        this.compressed = compressed;
+        this.index = index;
+    }
+
+    /**
+     * Builds the series of a weather bucket.
+     */
+    public static WeatherSeries of(MapUtil.BucketEntry weather) {
+        return new WeatherSeries(weather.getDataList(), false, DateIndex.forWeather(weather));
+    }
+
+    /**
+     * Builds the series of a weather station map, such as an entry of the
+     * <code>weathers</code> of a data package. The rows are read in place
+     * rather than decompressed.
+     *
+     * Whether the rows are compressed cannot be told from the rows
+     * themselves, and reading decompressed rows as compressed would fill
+     * every missing value from the first row, so the caller must say.
+     *
+     * @param station the weather station
+     * @param compressed <code>true</code> for a raw station (as read, or as
+     *        found in a data package), <code>false</code> for one returned
+     *        by {@link MapUtil#decompressPackage(Map)}
+     */
+    public static WeatherSeries of(Map<String, Object> station, boolean compressed) {
+        List<HashMap<String, String>> rows = new BucketView(station).getRawDataList();
+        return new WeatherSeries(rows, compressed, DateIndex.build(new DataListCursor(rows, compressed), "w_date"));
+    }
+
+    /**
+     * Returns the first date of the series, or <code>null</code> if it is
+     * empty.
+     */
+    public String getFirstDate() {
+        return index.getFirstDate();
+    }
+
+    /**
+     * Returns the last date of the series, or <code>null</code> if it is
+     * empty.
+     */
+    public String getLastDate() {
+        return index.getLastDate();
+    }
+
+    /**
+     * Returns the number of days with a row.
+     */
+    public int size() {
+        return index.size();
+    }
+
+    /**
+     * Returns the values of a variable in date order, with <code>NaN</code>
+     * for missing (or unparsable) values. The array is shared and must not
+     * be modified.
+     */
+    public double[] column(String variable) {
+        double[] values = columns.get(variable);
+        if (values == null) {
+            double[] byRow = new DataListCursor(rows, compressed).toDoubleArray(variable);
+            values = new double[index.size()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = byRow[index.getRowIndex(i)];
+            }
+            // Two threads may parse the same column, either copy is fine.
+            columns.put(variable, values);
+        }
+        return values;
+    }
+
+    /**
+     * Summarizes a variable between two dates.
+     *
+     * @param variable the variable (<code>tmax</code>, <code>rain</code>...)
+     * @param from the first date (<code>yyyyMMdd</code>), included
+     * @param to the last date (<code>yyyyMMdd</code>), included
+     */
+    public Summary summarize(String variable, String from, String to) {
+        return summarize(variable, toDay(from), toDay(to), from);
+    }
+
+    /**
+     * Summarizes a variable over the whole series.
+     */
+    public Summary summarize(String variable) {
+        if (index.size() == 0) {
+            return new Summary(null, 0, 0, 0.0, Double.NaN, Double.NaN);
+        }
+        return summarize(variable, index.getDay(0), index.getDay(index.size() - 1), index.getFirstDate());
+    }
+
+    /**
+     * Summarizes a variable for every calendar month of the series.
+     *
+     * @return one summary per month, labelled <code>yyyyMM</code>, in
+     *         date order.
+     */
+    public List<Summary> monthly(String variable) {
+        ArrayList<Summary> acc = new ArrayList<Summary>();
+        if (index.size() == 0) {
+            return acc;
+        }
+        int day = index.getDay(0);
+        int last = index.getDay(index.size() - 1);
+        while (day <= last) {
+            int next = nextMonth(day);
+            acc.add(summarize(variable, day, next - 1, DateIndex.fromEpochDay(day).substring(0, 6)));
+            day = next;
+        }
+        return acc;
+    }
+
+    /**
+     * Computes the growing degree days between two dates, from the daily
+     * <code>tmax</code> and <code>tmin</code>.
+     *
+     * Each day contributes <code>(min(tmax, cap) + max(tmin, base)) / 2 -
+     * base</code>, or nothing if that is negative. Days with a missing
+     * temperature contribute nothing.
+     *
+     * @param from the first date (<code>yyyyMMdd</code>), included
+     * @param to the last date (<code>yyyyMMdd</code>), included
+     * @param base the base temperature
+     * @param cap the temperature above which development stops increasing
+     */
+    public double growingDegreeDays(String from, String to, double base, double cap) {
+        double[] tmax = column("tmax");
+        double[] tmin = column("tmin");
+        int[] range = index.range(toDay(from), toDay(to));
+        double acc = 0.0;
+        for (int i = range[0]; i < range[1]; i++) {
+            double high = Math.min(tmax[i], cap);
+            double low = Math.max(tmin[i], base);
+            double thermal = (high + low) / 2.0 - base;
+            // NaN never compares greater, so missing days are skipped.
+            if (thermal > 0.0) {
+                acc += thermal;
+            }
+        }
+        return acc;
+    }
+
+    /**
+     * Runs the same aggregation over many weather stations concurrently.
+     *
+     * @param stations the weather stations
+     * @param compressed whether the stations are raw or decompressed, see
+     *        {@link #of(Map, boolean)}
+     * @param aggregation computes a result from the series of a station
+     * @param executor runs one task per station
+     * @return the results, in station order
+     * @throws InterruptedException if interrupted while waiting for the
+     *         results
+     */
+    public static <T> List<T> aggregateAll(List<? extends Map<String, Object>> stations, final boolean compressed, final Aggregation<T> aggregation, ExecutorService executor) throws InterruptedException {
+        ArrayList<Callable<T>> tasks = new ArrayList<Callable<T>>(stations.size());
+        for (final Map<String, Object> station : stations) {
+            tasks.add(new Callable<T>() {
+                public T call() {
+                    return aggregation.apply(of(station, compressed));
+                }
+            });
+        }
+        return MapUtil.invokeAllInOrder(executor, tasks);
+    }
+
+    private Summary summarize(String variable, int first, int last, String label) {
+        double[] values = column(variable);
+        int[] range = index.range(first, last);
+        int count = 0;
+        double sum = 0.0;
+        double min = Double.NaN;
+        double max = Double.NaN;
+        for (int i = range[0]; i < range[1]; i++) {
+            double v = values[i];
+            if (v == v) {
+                if (count == 0 || v < min) {
+                    min = v;
+                }
+                if (count == 0 || v > max) {
+                    max = v;
+                }
+                sum += v;
+                count++;
+            }
+        }
+        // Only the days within the series can be missing.
+        int days = 0;
+        if (index.size() > 0) {
+            long start = Math.max(first, index.getDay(0));
+            long end = Math.min(last, index.getDay(index.size() - 1));
+            days = (int) Math.max(0, end - start + 1);
+        }
+        return new Summary(label, count, Math.max(0, days - count), sum, min, max);
+    }
+
+    private static int nextMonth(int day) {
+        int value = DateIndex.toDateValue(day);
+        int year = value / 10000;
+        int month = (value / 100) % 100;
+        return (month == 12) ? DateIndex.toEpochDay(year + 1, 1, 1) : DateIndex.toEpochDay(year, month + 1, 1);
+    }
+
+    private static int toDay(String date) {
+        int day = DateIndex.toEpochDay(date);
+        if (day == Integer.MIN_VALUE) {
+            throw new IllegalArgumentException("Invalid date: " + date);
+        }
+        return day;
+    }
+
+    /**
+     * An aggregation run by {@link WeatherSeries#aggregateAll}.
+     */
+    public interface Aggregation<T> {
+        T apply(WeatherSeries series);
+    }
+
+    /**
+     * The count, sum, mean, minimum and maximum of a variable over a window.
+     */
+    public static class Summary {
+        private final String label;
+        private final int count;
+        private final int missing;
+        private final double sum;
+        private final double min;
+        private final double max;
+
+        Summary(String label, int count, int missing, double sum, double min, double max) {
+            this.label = label;
+            this.count = count;
+            this.missing = missing;
+            this.sum = sum;
+            this.min = min;
+            this.max = max;
+        }
+
+        /**
+         * Returns the month (<code>yyyyMM</code>) or first date of the
+         * window.
+         */
+        public String getLabel() {
+            return label;
+        }
+
+        /**
+         * Returns the number of days with a value.
+         */
+        public int getCount() {
+            return count;
+        }
+
+        /**
+         * Returns the number of days of the window, within the dates of the
+         * series, which have no value.
+         */
+        public int getMissing() {
+            return missing;
+        }
+
+        public double getSum() {
+            return sum;
+        }
+
+        /**
+         * Returns the mean, or <code>NaN</code> if there is no value.
+         */
+        public double getMean() {
+            return (count == 0) ? Double.NaN : sum / count;
+        }
+
+        /**
+         * Returns the minimum, or <code>NaN</code> if there is no value.
+         */
+        public double getMin() {
+            return min;
+        }
+
+        /**
+         * Returns the maximum, or <code>NaN</code> if there is no value.
+         */
+        public double getMax() {
+            return max;
+        }
+
+        @Override
+        public String toString() {
+            return "Summary{label=" + label + ", count=" + count + ", missing=" + missing + ", sum=" + sum
+                + ", min=" + min + ", max=" + max + "}";
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package org.agmip.core;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.agmip.core.types.TranslatorInput;
+import org.agmip.core.types.TranslatorOutput;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class TranslationExecutorTest {
+    @Test
+    public void translatesEveryExperiment() throws Exception {
+        TranslatorInput input = new TranslatorInput() {
+            public Map readFile(String file) throws IOException {
+                if (file.equals("broken.json")) {
+                    throw new IOException("Unreadable");
+                }
+                return samplePackage(file, 25);
+            }
+        };
+        final List<Map> dssat = Collections.synchronizedList(new ArrayList<Map>());
+        final List<Map> apsim = Collections.synchronizedList(new ArrayList<Map>());
+        final Set<String> directories = Collections.synchronizedSet(new HashSet<String>());
+        TranslatorOutput failing = new TranslatorOutput() {
+            public void writeFile(String outputDirectory, Map data) throws IOException {
+                directories.add(outputDirectory);
+                if ("f3.json-EXP7".equals(data.get("exname"))) {
+                    throw new IOException("Disk full");
+                }
+                apsim.add(data);
+            }
+        };
+
+        TranslationReport report = new TranslationExecutor(input)
+            .addOutput(ModelEnum.DSSAT, collector(dssat), "out/dssat")
+            .addOutput(ModelEnum.APSIM, failing, "out/apsim")
+            .setReaders(2)
+            .setTransformers(3)
+            .setWriters(2)
+            .setQueueCapacity(2)
+            .run(Arrays.asList("f0.json", "f1.json", "broken.json", "f3.json"));
+
+        assertEquals(75, dssat.size());
+        assertEquals(74, apsim.size());
+        assertEquals(Collections.singleton("out/apsim"), directories);
+        HashSet<Object> names = new HashSet<Object>();
+        for (Map experiment : dssat) {
+            names.add(experiment.get("exname"));
+            // Written decompressed: the second day does not inherit tmax.
+            Map weather = (Map) experiment.get("weather");
+            assertEquals("W0", weather.get("wst_id"));
+            List<Map> days = (List<Map>) weather.get("dailyWeather");
+            assertEquals("25.0", days.get(0).get("tmax"));
+            assertFalse(days.get(1).containsKey("tmax"));
+            assertEquals("19820102", days.get(1).get("w_date"));
+        }
+        assertEquals(75, names.size());
+
+        assertEquals(2, report.getFailures().size());
+        assertEquals(3, report.getStage("read").getProcessed());
+        assertEquals(1, report.getStage("read").getFailed());
+        assertEquals(3, report.getStage("transform").getProcessed());
+        assertEquals(75, report.getStage("transform").getProduced());
+        assertEquals(75, report.getStage("write DSSAT").getProcessed());
+        assertEquals(1, report.getStage("write APSIM").getFailed());
+        assertEquals(4, report.getStages().size());
+        for (TranslationReport.Failure failure : report.getFailures()) {
+            assertTrue(failure.getFile().equals("broken.json") || failure.getStage().equals("write APSIM"));
+        }
+    }
+
+    @Test
+    public void writesWholePackagesWithoutFlattening() throws Exception {
+        TranslatorInput input = new TranslatorInput() {
+            public Map readFile(String file) {
+                if (file.equals("single.json")) {
+                    HashMap<String, Object> experiment = new HashMap<String, Object>();
+                    experiment.put("exname", "SINGLE");
+                    return experiment;
+                }
+                return samplePackage(file, 5);
+            }
+        };
+        List<Map> written = Collections.synchronizedList(new ArrayList<Map>());
+        TranslationReport report = new TranslationExecutor(input)
+            .addOutput(ModelEnum.JSON, collector(written), "out")
+            .setFlatten(false)
+            .run(Arrays.asList("a.json", "single.json"));
+
+        assertFalse(report.hasFailures());
+        assertEquals(2, written.size());
+        int packages = 0;
+        for (Map data : written) {
+            if (data.containsKey("experiments")) {
+                assertEquals(5, ((List) data.get("experiments")).size());
+                packages++;
+            } else {
+                assertEquals("SINGLE", data.get("exname"));
+            }
+        }
+        assertEquals(1, packages);
+    }
+
+    @Test(timeout = 10000)
+    public void survivesErrorsFromTranslators() throws Exception {
+        TranslatorInput input = new TranslatorInput() {
+            public Map readFile(String file) {
+                return samplePackage(file, 10);
+            }
+        };
+        final List<Map> written = Collections.synchronizedList(new ArrayList<Map>());
+        TranslatorOutput output = new TranslatorOutput() {
+            public void writeFile(String outputDirectory, Map data) {
+                if ("a.json-EXP3".equals(data.get("exname"))) {
+                    throw new StackOverflowError();
+                }
+                written.add(data);
+            }
+        };
+        TranslationReport report = new TranslationExecutor(input)
+            .addOutput(ModelEnum.DSSAT, output, "out")
+            .setQueueCapacity(1)
+            .run(Arrays.asList("a.json", "b.json"));
+
+        assertEquals(19, written.size());
+        assertEquals(1, report.getFailures().size());
+        assertTrue(report.getFailures().get(0).getCause() instanceof StackOverflowError);
+    }
+
+    @Test(timeout = 10000)
+    public void decompressesExperimentsAsTheyAreWritten() throws Exception {
+        final AtomicInteger decompressed = new AtomicInteger();
+        TranslatorInput input = new TranslatorInput() {
+            public Map readFile(String file) {
+                HashMap<String, Object> pkg = samplePackage(file, 100);
+                // Every experiment shares this station, whose rows are read once per decompression.
+                HashMap<String, Object> weather = ((List<HashMap<String, Object>>) pkg.get("weathers")).get(0);
+                weather.put("dailyWeather", new ArrayList<HashMap<String, String>>((List) weather.get("dailyWeather")) {
+                    @Override
+                    public Iterator<HashMap<String, String>> iterator() {
+                        decompressed.incrementAndGet();
+                        return super.iterator();
+                    }
+                });
+                return pkg;
+            }
+        };
+        final AtomicInteger decompressedAtFirstWrite = new AtomicInteger(-1);
+        TranslatorOutput output = new TranslatorOutput() {
+            public void writeFile(String outputDirectory, Map data) {
+                decompressedAtFirstWrite.compareAndSet(-1, decompressed.get());
+            }
+        };
+        TranslationReport report = new TranslationExecutor(input)
+            .addOutput(ModelEnum.DSSAT, output, "out")
+            .setQueueCapacity(1)
+            .run(Arrays.asList("a.json"));
+
+        assertEquals(100, report.getStage("write DSSAT").getProcessed());
+        assertTrue(decompressed.get() >= 100);
+        assertTrue("Decompressed " + decompressedAtFirstWrite.get() + " experiments before the first write",
+            decompressedAtFirstWrite.get() <= 4);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void needsAnOutput() throws Exception {
+        new TranslationExecutor(null).run(Arrays.asList("a.json"));
+    }
+
+    private static TranslatorOutput collector(final List<Map> written) {
+        return new TranslatorOutput() {
+            public void writeFile(String outputDirectory, Map data) {
+                written.add(data);
+            }
+        };
+    }
+
+    private static HashMap<String, Object> samplePackage(String file, int experiments) {
+        HashMap<String, Object> pkg = new HashMap<String, Object>();
+        ArrayList<HashMap<String, Object>> exps = new ArrayList<HashMap<String, Object>>();
+        for (int i = 0; i < experiments; i++) {
+            HashMap<String, Object> exp = new HashMap<String, Object>();
+            exp.put("exname", file + "-EXP" + i);
+            exp.put("wst_id", "W0");
+            exp.put("soil_id", "S0");
+            exps.add(exp);
+        }
+        ArrayList<HashMap<String, Object>> weathers = new ArrayList<HashMap<String, Object>>();
+        HashMap<String, Object> weather = new HashMap<String, Object>();
+        weather.put("wst_id", "W0");
+        ArrayList<HashMap<String, String>> days = new ArrayList<HashMap<String, String>>();
+        HashMap<String, String> day = new HashMap<String, String>();
+        day.put("w_date", "19820101");
+        day.put("tmax", "25.0");
+        days.add(day);
+        day = new HashMap<String, String>();
+        day.put("w_date", "19820102");
+        day.put("tmax", "");
+        days.add(day);
+        weather.put("dailyWeather", days);
+        weathers.add(weather);
+        ArrayList<HashMap<String, Object>> soils = new ArrayList<HashMap<String, Object>>();
+        HashMap<String, Object> soil = new HashMap<String, Object>();
+        soil.put("soil_id", "S0");
+        soils.add(soil);
+        pkg.put("experiments", exps);
+        pkg.put("weathers", weathers);
+        pkg.put("soils", soils);
+        return pkg;
+    }
+}
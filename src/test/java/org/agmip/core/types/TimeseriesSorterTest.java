@@ -0,0 +1,53 @@
+package org.agmip.core.types;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import org.agmip.util.JSONAdapter;
+import org.agmip.util.MapUtil;
+
+public class TimeseriesSorterTest {
+    @Test
+    public void sortsLikeTheComparator() throws IOException {
+        URL resource = this.getClass().getResource("/simulation_pp.json");
+        HashMap<String, Object> experiment = JSONAdapter.fromJSONFile(resource.getPath());
+        ArrayList<HashMap<String, String>> daily = MapUtil.getBucket(experiment, "weather").getDataList();
+        assertTrue(TimeseriesSorter.isSorted(daily, "w_date"));
+
+        ArrayList<HashMap<String, String>> shuffled = new ArrayList<HashMap<String, String>>(daily);
+        Collections.shuffle(shuffled, new Random(42));
+        shuffled.add(10, new HashMap<String, String>(Collections.singletonMap("tmax", "30.1")));
+        assertFalse(TimeseriesSorter.isSorted(shuffled, "w_date"));
+
+        ArrayList<HashMap<String, String>> expected = new ArrayList<HashMap<String, String>>(shuffled);
+        Collections.sort(expected, new TimeseriesComparator("w_date"));
+        TimeseriesSorter.sort(shuffled, "w_date");
+        assertEquals(expected, shuffled);
+        assertTrue(TimeseriesSorter.isSorted(shuffled, "w_date"));
+        assertNull(shuffled.get(shuffled.size() - 1).get("w_date"));
+    }
+
+    @Test
+    public void sortsStringKeysStably() {
+        ArrayList<HashMap<String, String>> rows = new ArrayList<HashMap<String, String>>();
+        String[] dates = {"1982-02-01", "1982-01-15", "1982-02-01", "1982-01-01"};
+        for (int i = 0; i < dates.length; i++) {
+            HashMap<String, String> row = new HashMap<String, String>();
+            row.put("date", dates[i]);
+            row.put("row", Integer.toString(i));
+            rows.add(row);
+        }
+        TimeseriesSorter.sort(rows, "date");
+        assertEquals("3", rows.get(0).get("row"));
+        assertEquals("1", rows.get(1).get("row"));
+        assertEquals("0", rows.get(2).get("row"));
+        assertEquals("2", rows.get(3).get("row"));
+    }
+}
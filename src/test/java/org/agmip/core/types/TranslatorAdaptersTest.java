@@ -0,0 +1,193 @@
+package org.agmip.core.types;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class TranslatorAdaptersTest {
+    @Test
+    public void roundTripThroughStreaming() throws Exception {
+        final HashMap<String, Object> pkg = samplePackage(50);
+        TranslatorInput input = new TranslatorInput() {
+            public Map readFile(String file) {
+                return pkg;
+            }
+        };
+        final ArrayList<Map> written = new ArrayList<Map>();
+        TranslatorOutput output = new TranslatorOutput() {
+            public void writeFile(String outputDirectory, Map data) {
+                written.add(data);
+            }
+        };
+
+        int count = TranslatorAdapters.pipe(TranslatorAdapters.streaming(input), "in.json",
+            TranslatorAdapters.streaming(output), "out", 4);
+        assertEquals(52, count);
+        assertEquals(1, written.size());
+        assertEquals(pkg, written.get(0));
+
+        assertEquals(pkg, TranslatorAdapters.buffered(TranslatorAdapters.streaming(input)).readFile("in.json"));
+        TranslatorAdapters.buffered(TranslatorAdapters.streaming(output)).writeFile("out", pkg);
+        assertEquals(pkg, written.get(1));
+    }
+
+    @Test
+    public void singleExperimentIsStreamedAsExperiments() throws IOException {
+        HashMap<String, Object> experiment = new HashMap<String, Object>();
+        experiment.put("exname", "EXP");
+        final ArrayList<String> contents = new ArrayList<String>();
+        TranslatorAdapters.emit(experiment, new DatasetSink() {
+            public void accept(String content, HashMap<String, Object> entry) {
+                contents.add(content);
+            }
+        });
+        assertEquals(2, contents.size());
+        assertEquals(DatasetSink.SINGLE_EXPERIMENT, contents.get(0));
+        assertEquals("experiments", contents.get(1));
+    }
+
+    @Test
+    public void roundTripKeepsPackageValues() throws Exception {
+        HashMap<String, Object> pkg = samplePackage(3);
+        pkg.put("version", "1.0");
+        ArrayList<String> notes = new ArrayList<String>();
+        notes.add("converted");
+        pkg.put("notes", notes);
+        assertRoundTrip(pkg, 5);
+    }
+
+    @Test
+    public void roundTripKeepsSingleExperiments() throws Exception {
+        HashMap<String, Object> experiment = new HashMap<String, Object>();
+        experiment.put("exname", "EXP");
+        experiment.put("wst_id", "W0");
+        assertRoundTrip(experiment, 1);
+
+        // A package of a single experiment stays a package.
+        HashMap<String, Object> pkg = new HashMap<String, Object>();
+        ArrayList<HashMap<String, Object>> experiments = new ArrayList<HashMap<String, Object>>();
+        experiments.add(experiment);
+        pkg.put("experiments", experiments);
+        assertRoundTrip(pkg, 1);
+    }
+
+    private static void assertRoundTrip(final HashMap<String, Object> data, int entries) throws Exception {
+        TranslatorInput input = new TranslatorInput() {
+            public Map readFile(String file) {
+                return data;
+            }
+        };
+        final ArrayList<Map> written = new ArrayList<Map>();
+        TranslatorOutput output = new TranslatorOutput() {
+            public void writeFile(String outputDirectory, Map data) {
+                written.add(data);
+            }
+        };
+
+        assertEquals(data, TranslatorAdapters.buffered(TranslatorAdapters.streaming(input)).readFile("in.json"));
+        assertEquals(entries, TranslatorAdapters.pipe(TranslatorAdapters.streaming(input), "in.json",
+            TranslatorAdapters.streaming(output), "out", 2));
+        TranslatorAdapters.buffered(TranslatorAdapters.streaming(output)).writeFile("out", data);
+        assertEquals(2, written.size());
+        assertEquals(data, written.get(0));
+        assertEquals(data, written.get(1));
+    }
+
+    @Test
+    public void writerFailureStopsTheReader() throws Exception {
+        final HashMap<String, Object> pkg = samplePackage(1000);
+        final ArrayList<String> calls = new ArrayList<String>();
+        StreamingTranslatorOutput failing = new StreamingTranslatorOutput() {
+            public DatasetWriter openWriter(String outputDirectory) {
+                return new DatasetWriter() {
+                    int seen = 0;
+
+                    public void accept(String content, HashMap<String, Object> entry) throws IOException {
+                        if (++seen == 10) {
+                            throw new IOException("Disk full");
+                        }
+                    }
+
+                    public void close() {
+                        calls.add("close");
+                    }
+
+                    public void abort() {
+                        calls.add("abort");
+                    }
+                };
+            }
+        };
+        StreamingTranslatorInput input = new StreamingTranslatorInput() {
+            public void readFile(String file, DatasetSink sink) throws Exception {
+                TranslatorAdapters.emit(pkg, sink);
+            }
+        };
+        try {
+            TranslatorAdapters.pipe(input, "in.json", failing, "out", 2);
+            fail("The write failure should be rethrown");
+        } catch (IOException ex) {
+            assertEquals("Disk full", ex.getMessage());
+        }
+        assertEquals(1, calls.size());
+        assertEquals("abort", calls.get(0));
+
+        try {
+            TranslatorAdapters.buffered(failing).writeFile("out", pkg);
+            fail("The write failure should be rethrown");
+        } catch (IOException ex) {
+            assertEquals("Disk full", ex.getMessage());
+        }
+        assertEquals(2, calls.size());
+        assertEquals("abort", calls.get(1));
+    }
+
+    @Test
+    public void readerFailureWritesNothing() throws Exception {
+        StreamingTranslatorInput failing = new StreamingTranslatorInput() {
+            public void readFile(String file, DatasetSink sink) throws Exception {
+                sink.accept("experiments", new HashMap<String, Object>());
+                throw new IOException("Truncated file");
+            }
+        };
+        final ArrayList<Map> written = new ArrayList<Map>();
+        StreamingTranslatorOutput output = TranslatorAdapters.streaming(new TranslatorOutput() {
+            public void writeFile(String outputDirectory, Map data) {
+                written.add(data);
+            }
+        });
+        try {
+            TranslatorAdapters.pipe(failing, "in.json", output, "out", 2);
+            fail("The read failure should be rethrown");
+        } catch (IOException ex) {
+            assertEquals("Truncated file", ex.getMessage());
+        }
+        assertTrue(written.isEmpty());
+    }
+
+    private static HashMap<String, Object> samplePackage(int experiments) {
+        HashMap<String, Object> pkg = new HashMap<String, Object>();
+        ArrayList<HashMap<String, Object>> exps = new ArrayList<HashMap<String, Object>>();
+        for (int i = 0; i < experiments; i++) {
+            HashMap<String, Object> exp = new HashMap<String, Object>();
+            exp.put("exname", "EXP" + i);
+            exps.add(exp);
+        }
+        ArrayList<HashMap<String, Object>> weathers = new ArrayList<HashMap<String, Object>>();
+        HashMap<String, Object> weather = new HashMap<String, Object>();
+        weather.put("wst_id", "W0");
+        weathers.add(weather);
+        ArrayList<HashMap<String, Object>> soils = new ArrayList<HashMap<String, Object>>();
+        HashMap<String, Object> soil = new HashMap<String, Object>();
+        soil.put("soil_id", "S0");
+        soils.add(soil);
+        pkg.put("experiments", exps);
+        pkg.put("weathers", weathers);
+        pkg.put("soils", soils);
+        return pkg;
+    }
+}
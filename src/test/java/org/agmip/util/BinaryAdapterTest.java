@@ -0,0 +1,66 @@
+package org.agmip.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class BinaryAdapterTest {
+    @Test
+    public void roundTripsSimulation() throws IOException {
+        for (String resource : new String[] {"/simulation.json", "/simulation_pp.json"}) {
+            URL url = this.getClass().getResource(resource);
+            HashMap<String, Object> data = JSONAdapter.fromJSONFile(url.getPath());
+            byte[] binary = BinaryAdapter.toBinary(data);
+            assertEquals(resource, data, BinaryAdapter.fromBinary(binary));
+            assertTrue(resource, binary.length < new File(url.getPath()).length());
+        }
+    }
+
+    @Test
+    public void roundTripsEveryValueType() throws IOException {
+        HashMap<String, Object> data = new HashMap<String, Object>();
+        data.put("text", "café");
+        data.put("empty", "");
+        data.put("int", -42);
+        data.put("long", 1L << 40);
+        data.put("double", 0.1);
+        data.put("big", new BigInteger("123456789012345678901234567890"));
+        data.put("flag", true);
+        data.put("nothing", null);
+        data.put("mixed", new ArrayList<Object>(Arrays.asList("a", 1, null)));
+        data.put("none", new ArrayList<Object>());
+
+        ArrayList<HashMap<String, String>> rows = new ArrayList<HashMap<String, String>>();
+        String[][] values = {{"19820101", "25.4", "-3", "007", "A"}, {"19820102", "", "12.50", null, "B"},
+            {null, "26.0", "-0.0", "1e3", "A"}};
+        String[] keys = {"w_date", "tmax", "tmin", "code", "flag"};
+        for (String[] row : values) {
+            HashMap<String, String> m = new HashMap<String, String>();
+            for (int i = 0; i < keys.length; i++) {
+                if (row[i] != null) {
+                    m.put(keys[i], row[i]);
+                }
+            }
+            rows.add(m);
+        }
+        data.put("dailyWeather", rows);
+
+        Map<String, Object> read = BinaryAdapter.fromBinary(BinaryAdapter.toBinary(data));
+        assertEquals(data, read);
+        assertTrue(read.get("int") instanceof Integer);
+        assertTrue(read.get("long") instanceof Long);
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsOtherFormats() throws IOException {
+        BinaryAdapter.fromBinary("{\"exname\":\"X\"}".getBytes("UTF-8"));
+    }
+}
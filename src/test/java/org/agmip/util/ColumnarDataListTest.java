@@ -0,0 +1,82 @@
+package org.agmip.util;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import static org.agmip.util.MapUtil.*;
+
+public class ColumnarDataListTest {
+    @Test
+    public void matchesBucketEntry() throws IOException {
+        URL resource = this.getClass().getResource("/simulation_pp.json");
+        HashMap<String, Object> experiment = JSONAdapter.fromJSONFile(resource.getPath());
+
+        for (String bucket : new String[] {"weather", "soil", "initial_condition", "management"}) {
+            BucketEntry expected = getBucket(experiment, bucket);
+            ColumnarBucketEntry actual = getColumnarBucket(experiment, bucket);
+            assertEquals(expected.getValues(), actual.getValues());
+            assertEquals(expected.getDataList(), actual.getColumns().toDataList());
+            assertEquals(expected.getDataList(), actual.getDataList());
+        }
+
+        ColumnarDataList weather = getColumnarBucket(experiment, "weather").getColumns();
+        assertTrue(weather.isNumeric("w_date"));
+        assertTrue(weather.isNumeric("tmax"));
+        assertEquals(Double.parseDouble(weather.getValue("tmax", 10)), weather.getDouble("tmax", 10), 0.0);
+    }
+
+    @Test
+    public void keepsOriginalStrings() {
+        String[] values = {"0.05", "-1.50", "12", "-0.0", "007", "1e3", "12345678901234.5", "-9"};
+        ArrayList<HashMap<String, String>> rows = new ArrayList<HashMap<String, String>>();
+        for (String value : values) {
+            HashMap<String, String> row = new HashMap<String, String>();
+            row.put("mixed", value);
+            if (!value.startsWith("0") && !value.startsWith("-0") && !value.contains("e")) {
+                row.put("decimal", value);
+            }
+            rows.add(row);
+        }
+        HashMap<String, String> sparse = new HashMap<String, String>();
+        sparse.put("decimal", "3.25");
+        rows.add(sparse);
+
+        ColumnarDataList columns = ColumnarDataList.fromRows(rows);
+        assertEquals(rows, columns.toDataList());
+        assertFalse(columns.isNumeric("mixed"));
+        assertTrue(columns.isNumeric("decimal"));
+        assertEquals(-1.5, columns.getDouble("decimal", 1), 0.0);
+        assertTrue(columns.isMissing("mixed", values.length));
+        assertTrue(Double.isNaN(columns.getDouble("mixed", values.length)));
+    }
+
+    @Test
+    public void decompressesStickyRows() {
+        ArrayList<HashMap<String, String>> rows = new ArrayList<HashMap<String, String>>();
+        HashMap<String, String> first = new HashMap<String, String>();
+        first.put("w_date", "19820101");
+        first.put("rain", "0.0");
+        rows.add(first);
+        HashMap<String, String> second = new HashMap<String, String>();
+        second.put("w_date", "19820102");
+        rows.add(second);
+        HashMap<String, String> third = new HashMap<String, String>();
+        third.put("w_date", "19820103");
+        third.put("rain", "");
+        rows.add(third);
+
+        BucketEntry expected = new BucketEntry();
+        expected.getDataList().addAll(rows);
+        expected.parseDataList();
+
+        ColumnarDataList columns = ColumnarDataList.fromCompressedRows(rows);
+        assertEquals(expected.getDataList(), columns.toDataList());
+        assertEquals("0.0", columns.getValue("rain", 1));
+        assertTrue(columns.isMissing("rain", 2));
+    }
+}
@@ -0,0 +1,187 @@
+package org.agmip.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.common.cache.CacheLoader;
+
+import org.agmip.core.types.DatasetSink;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class DatasetCacheTest {
+    @Test
+    public void loadsOnceAndKeepsRawEntries() throws ExecutionException {
+        final AtomicInteger loads = new AtomicInteger();
+        DatasetCache weathers = DatasetCache.weathers(1 << 20, new CacheLoader<String, HashMap<String, Object>>() {
+            public HashMap<String, Object> load(String id) {
+                loads.incrementAndGet();
+                return station(id, 10);
+            }
+        });
+
+        HashMap<String, Object> first = weathers.get("W1");
+        assertSame(first, weathers.get("W1"));
+        assertEquals(1, loads.get());
+        assertEquals(1, weathers.stats().hitCount());
+        assertEquals(1, weathers.stats().missCount());
+
+        ArrayList<HashMap<String, String>> rows = (ArrayList<HashMap<String, String>>) first.get("dailyWeather");
+        assertFalse(rows.get(9).containsKey("tmax"));
+        rows = MapUtil.getPackageContents(pkgOf(first), "weathers").get(0).getDataList();
+        assertEquals("25.0", rows.get(9).get("tmax"));
+        assertNull(rows.get(5).get("tmax"));
+    }
+
+    @Test
+    public void evictsByWeight() {
+        HashMap<String, Object> station = station("W0", 100);
+        long weight = DatasetCache.estimateSize(station);
+        DatasetCache weathers = DatasetCache.weathers(weight * 40, new CacheLoader<String, HashMap<String, Object>>() {
+            public HashMap<String, Object> load(String id) {
+                return station(id, 100);
+            }
+        });
+        for (int i = 0; i < 100; i++) {
+            assertNotNull(weathers.find("W" + i));
+        }
+        assertTrue(weathers.size() <= 40);
+        assertEquals(100 - weathers.size(), weathers.stats().evictionCount());
+        assertNotNull(weathers.getIfPresent("W99"));
+    }
+
+    @Test
+    public void flatPackFallsBackToTheCache() throws Exception {
+        DatasetCache soils = DatasetCache.soils(1 << 20, new CacheLoader<String, HashMap<String, Object>>() {
+            public HashMap<String, Object> load(String id) throws Exception {
+                throw new Exception("No soil " + id);
+            }
+        });
+        HashMap<String, Object> soil = new HashMap<String, Object>();
+        soil.put("soil_id", "S1");
+        soils.put(soil);
+        DatasetCache weathers = DatasetCache.weathers(1 << 20, new CacheLoader<String, HashMap<String, Object>>() {
+            public HashMap<String, Object> load(String id) {
+                return station(id, 5);
+            }
+        });
+
+        HashMap<String, Object> pkg = new HashMap<String, Object>();
+        ArrayList<HashMap<String, Object>> experiments = new ArrayList<HashMap<String, Object>>();
+        for (String soilId : new String[] {"S1", "S2"}) {
+            HashMap<String, Object> experiment = new HashMap<String, Object>();
+            experiment.put("wst_id", "W1");
+            experiment.put("soil_id", soilId);
+            experiments.add(experiment);
+        }
+        pkg.put("experiments", experiments);
+
+        ArrayList<HashMap<String, Object>> flat = MapUtil.flatPack(pkg, weathers, soils);
+        assertSame(flat.get(0).get("weather"), flat.get(1).get("weather"));
+        assertEquals("S1", ((HashMap<String, Object>) flat.get(0).get("soil")).get("soil_id"));
+        assertFalse(flat.get(1).containsKey("soil"));
+        Iterator<HashMap<String, Object>> streamed = MapUtil.flatPackIterator(pkg, weathers, soils);
+        assertEquals(flat.get(0), streamed.next());
+
+        final List<HashMap<String, Object>> accepted = Collections.synchronizedList(new ArrayList<HashMap<String, Object>>());
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            MapUtil.flatPack(pkg, weathers, soils, new DatasetSink() {
+                public void accept(String content, HashMap<String, Object> entry) {
+                    accepted.add(entry);
+                }
+            }, executor, 2);
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(new HashSet<HashMap<String, Object>>(flat), new HashSet<HashMap<String, Object>>(accepted));
+
+        // Cached stations are decompressed like package ones, missing values included.
+        ArrayList<HashMap<String, String>> rows = MapUtil.getBucket(flat.get(0), "weather").getDataList();
+        assertEquals(5, rows.size());
+        assertEquals("25.0", rows.get(4).get("tmax"));
+        assertNull(rows.get(2).get("tmax"));
+    }
+
+    @Test
+    public void remembersFailedLoads() throws Exception {
+        final AtomicInteger loads = new AtomicInteger();
+        DatasetCache soils = DatasetCache.soils(1 << 20, new CacheLoader<String, HashMap<String, Object>>() {
+            public HashMap<String, Object> load(String id) throws Exception {
+                loads.incrementAndGet();
+                if (id.equals("S1")) {
+                    return null;
+                }
+                throw new Exception("No soil " + id);
+            }
+        });
+
+        HashMap<String, Object> pkg = new HashMap<String, Object>();
+        ArrayList<HashMap<String, Object>> experiments = new ArrayList<HashMap<String, Object>>();
+        for (int i = 0; i < 100; i++) {
+            HashMap<String, Object> experiment = new HashMap<String, Object>();
+            experiment.put("soil_id", "S" + (i % 2));
+            experiments.add(experiment);
+        }
+        pkg.put("experiments", experiments);
+
+        ArrayList<HashMap<String, Object>> flat = MapUtil.flatPack(pkg, null, soils);
+        assertEquals(100, flat.size());
+        for (HashMap<String, Object> experiment : flat) {
+            assertFalse(experiment.containsKey("soil"));
+        }
+        assertEquals(2, loads.get());
+        try {
+            soils.get("S1");
+            fail("Expected the null load to be remembered");
+        } catch (ExecutionException ex) {
+            assertTrue(ex.getCause() instanceof CacheLoader.InvalidCacheLoadException);
+        }
+        assertEquals(2, loads.get());
+
+        // Invalidating or putting an entry forgets the failure.
+        soils.invalidate("S0");
+        assertNull(soils.find("S0"));
+        assertEquals(3, loads.get());
+        HashMap<String, Object> soil = new HashMap<String, Object>();
+        soil.put("soil_id", "S1");
+        soils.put(soil);
+        assertSame(soil, soils.find("S1"));
+        assertEquals(3, loads.get());
+    }
+
+    private static HashMap<String, Object> pkgOf(HashMap<String, Object> station) {
+        ArrayList<HashMap<String, Object>> weathers = new ArrayList<HashMap<String, Object>>();
+        weathers.add(station);
+        HashMap<String, Object> pkg = new HashMap<String, Object>();
+        pkg.put("weathers", weathers);
+        return pkg;
+    }
+
+    private static HashMap<String, Object> station(String id, int days) {
+        HashMap<String, Object> station = new HashMap<String, Object>();
+        station.put("wst_id", id);
+        ArrayList<HashMap<String, String>> rows = new ArrayList<HashMap<String, String>>();
+        for (int i = 0; i < days; i++) {
+            HashMap<String, String> row = new HashMap<String, String>();
+            row.put("w_date", Integer.toString(19820101 + i));
+            if (i == 0) {
+                row.put("tmax", "25.0");
+            } else if (i == 2 || i == 5) {
+                row.put("tmax", "");
+            }
+            rows.add(row);
+        }
+        station.put("dailyWeather", rows);
+        return station;
+    }
+}
@@ -0,0 +1,95 @@
+package org.agmip.util;
+
+import java.io.IOException;
+import java.net.URL;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.GregorianCalendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TimeZone;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class DateIndexTest {
+    @Test
+    public void epochDays() {
+        SimpleDateFormat format = new SimpleDateFormat("yyyyMMdd");
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        GregorianCalendar calendar = new GregorianCalendar(TimeZone.getTimeZone("UTC"));
+        calendar.clear();
+        calendar.set(1800, Calendar.JANUARY, 1);
+        format.setCalendar(calendar);
+        for (int i = 0; i < 120000; i += 7) {
+            calendar.clear();
+            calendar.set(1800, Calendar.JANUARY, 1);
+            calendar.add(Calendar.DAY_OF_MONTH, i);
+            String date = format.format(calendar.getTime());
+            int day = DateIndex.toEpochDay(date);
+            assertEquals(date, calendar.getTimeInMillis() / 86400000L, day);
+            assertEquals(date, DateIndex.fromEpochDay(day));
+        }
+        assertEquals(0, DateIndex.toEpochDay("19700101"));
+        assertEquals(Integer.MIN_VALUE, DateIndex.toEpochDay("19820230"));
+        assertEquals(Integer.MIN_VALUE, DateIndex.toEpochDay("1982-1-1"));
+    }
+
+    @Test
+    public void queriesWeather() throws IOException {
+        HashMap<String, Object> experiment = loadExperiment();
+        MapUtil.BucketEntry weather = MapUtil.getBucket(experiment, "weather");
+        DateIndex index = DateIndex.forWeather(weather);
+        assertTrue(index.isDaily());
+        assertEquals(weather.getDataList().size(), index.size());
+        for (HashMap<String, String> row : weather.getDataList()) {
+            assertEquals(row.get("tmax"), index.getValue("tmax", row.get("w_date")));
+        }
+        assertNull(index.getRow("20200101"));
+
+        List<Map<String, String>> march = index.between("19820301", "19820331");
+        assertEquals(31, march.size());
+        assertEquals("19820301", march.get(0).get("w_date"));
+        assertEquals(0, index.between("19820331", "19820301").size());
+
+        String planting = DateIndex.findPlantingDate(experiment);
+        assertNotNull(planting);
+        List<Map<String, String>> season = index.growingSeason(experiment, 10, 100);
+        assertEquals(111, season.size());
+        assertEquals(planting, season.get(10).get("w_date"));
+    }
+
+    @Test
+    public void indexesUnsortedSeriesWithGaps() {
+        ArrayList<HashMap<String, String>> rows = new ArrayList<HashMap<String, String>>();
+        for (int day = 0; day < 400; day += 3) {
+            HashMap<String, String> row = new HashMap<String, String>();
+            row.put("date", DateIndex.fromEpochDay(4383 + day));
+            row.put("value", Integer.toString(day));
+            rows.add(row);
+        }
+        rows.add(new HashMap<String, String>());
+        Collections.shuffle(rows, new Random(3));
+
+        DateIndex index = DateIndex.build(rows, "date");
+        assertFalse(index.isDaily());
+        assertEquals(134, index.size());
+        for (int i = 1; i < index.size(); i++) {
+            assertEquals(index.getDay(i - 1) + 3, index.getDay(i));
+        }
+        assertEquals("3", index.getValue("value", "19820104"));
+        assertNull(index.getRow("19820105"));
+        List<Map<String, String>> window = index.window("19820110", 5, 5);
+        assertEquals(3, window.size());
+        assertEquals("6", window.get(0).get("value"));
+    }
+
+    private HashMap<String, Object> loadExperiment() throws IOException {
+        URL resource = this.getClass().getResource("/simulation_pp.json");
+        return JSONAdapter.fromJSONFile(resource.getPath());
+    }
+}
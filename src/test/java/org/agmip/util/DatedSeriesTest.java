@@ -0,0 +1,107 @@
+package org.agmip.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class DatedSeriesTest {
+    @Test
+    public void matchesNestedLoopJoin() {
+        Random random = new Random(17);
+        ArrayList<HashMap<String, String>> observedRows = new ArrayList<HashMap<String, String>>();
+        for (int i = 0; i < 40; i++) {
+            HashMap<String, String> row = new HashMap<String, String>();
+            row.put("date", DateIndex.fromEpochDay(4383 + random.nextInt(200)));
+            row.put("lai", Integer.toString(random.nextInt(6)));
+            // An empty value drops cwad from a compressed row.
+            row.put("cwad", random.nextBoolean() ? Integer.toString(random.nextInt(5000)) : "");
+            observedRows.add(row);
+        }
+        observedRows.get(0).put("cwad", "1200");
+        HashMap<String, Object> observed = new HashMap<String, Object>();
+        observed.put("timeSeries", observedRows);
+        HashMap<String, Object> experiment = new HashMap<String, Object>();
+        experiment.put("observed", observed);
+
+        ArrayList<HashMap<String, String>> simulatedRows = new ArrayList<HashMap<String, String>>();
+        for (int day = 20; day < 180; day++) {
+            HashMap<String, String> row = new HashMap<String, String>();
+            row.put("date", DateIndex.fromEpochDay(4383 + day));
+            row.put("lai", Double.toString(day / 40.0));
+            row.put("cwad", Integer.toString(day * 25));
+            row.put("swad", "0");
+            simulatedRows.add(row);
+        }
+        Collections.shuffle(simulatedRows, random);
+
+        DatedSeries obs = DatedSeries.forObserved(experiment, true);
+        DatedSeries sim = DatedSeries.build(simulatedRows, "date");
+        assertEquals(40, obs.size());
+        assertTrue(obs.getVariables().contains("cwad"));
+        assertFalse(obs.getVariables().contains("date"));
+
+        Map<String, AlignedSeries> all = obs.alignAll(sim);
+        assertEquals(2, all.size());
+        ArrayList<HashMap<String, String>> decompressed = MapUtil.getBucket(experiment, "observed").getDataList();
+        for (String variable : new String[] {"lai", "cwad"}) {
+            AlignedSeries aligned = all.get(variable);
+            int pairs = 0;
+            double squares = 0.0;
+            for (HashMap<String, String> o : decompressed) {
+                for (HashMap<String, String> s : simulatedRows) {
+                    if (o.get(variable) != null && o.get("date").equals(s.get("date"))) {
+                        double error = Double.parseDouble(s.get(variable)) - Double.parseDouble(o.get(variable));
+                        squares += error * error;
+                        pairs++;
+                    }
+                }
+            }
+            assertEquals(variable, pairs, aligned.size());
+            assertEquals(variable, Math.sqrt(squares / pairs), aligned.getRmse(), 1e-9);
+            for (int i = 1; i < aligned.size(); i++) {
+                assertTrue(aligned.getDay(i - 1) <= aligned.getDay(i));
+            }
+
+            // The decompressed experiment gives the same pairs, blanked rows included.
+            AlignedSeries fromDecompressed = DatedSeries.forObserved(MapUtil.decompressAll(experiment), false).align(variable, sim);
+            assertEquals(variable, pairs, fromDecompressed.size());
+            assertEquals(variable, aligned.getRmse(), fromDecompressed.getRmse(), 0.0);
+        }
+    }
+
+    @Test
+    public void refillsFromArrays() {
+        ArrayList<HashMap<String, String>> rows = new ArrayList<HashMap<String, String>>();
+        for (int day = 0; day < 10; day += 3) {
+            HashMap<String, String> row = new HashMap<String, String>();
+            row.put("date", DateIndex.fromEpochDay(day));
+            row.put("lai", Integer.toString(day));
+            rows.add(row);
+        }
+        DatedSeries observed = DatedSeries.build(rows, "date");
+        int[] days = {0, 1, 2, 3, 4, 5, 6, 7, 8, 9};
+        double[] values = {1, 1, 1, Double.NaN, 5, 5, 7, 7, 7, 11};
+
+        AlignedSeries out = new AlignedSeries(1);
+        observed.align("lai", days, values, days.length, out);
+        assertEquals(3, out.size());
+        assertEquals("19700101", out.getDate(0));
+        assertArrayEquals(new double[] {0, 6, 9}, out.toObservedArray(), 0.0);
+        assertArrayEquals(new double[] {1, 7, 11}, out.toSimulatedArray(), 0.0);
+        assertEquals(4.0 / 3, out.getBias(), 1e-12);
+        assertEquals(4.0 / 3, out.getMeanAbsoluteError(), 1e-12);
+        assertEquals(Math.sqrt(6.0 / 3), out.getRmse(), 1e-12);
+        assertEquals(1.0 - 6.0 / (9 * 9 + 3 * 3 + 10 * 10), out.getIndexOfAgreement(), 1e-12);
+
+        observed.align("lai", days, values, 5, out);
+        assertEquals(1, out.size());
+        observed.align("swad", days, values, days.length, out);
+        assertEquals(0, out.size());
+        assertTrue(Double.isNaN(out.getRmse()));
+    }
+}
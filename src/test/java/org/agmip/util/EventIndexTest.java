@@ -0,0 +1,82 @@
+package org.agmip.util;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class EventIndexTest {
+    @Test
+    public void indexesManagementEvents() throws IOException {
+        URL resource = this.getClass().getResource("/simulation_pp.json");
+        HashMap<String, Object> experiment = JSONAdapter.fromJSONFile(resource.getPath());
+        EventIndex events = EventIndex.of(experiment);
+
+        assertTrue(events.getTypes().contains("harvest"));
+        assertEquals("19820226", events.firstDate("planting"));
+        assertEquals("19820226", DateIndex.findPlantingDate(experiment));
+        assertEquals(3, events.count("fertilizer"));
+        assertEquals(116.0, events.total("fertilizer", "feamn"), 0.0);
+        assertEquals(62.0, events.total("fertilizer", "feamn", "19820401", "19820430"), 0.0);
+        assertEquals("19820517", events.last("fertilizer").get("date"));
+        assertEquals("54", events.next("fertilizer", "19820413").get("feamn"));
+        assertNull(events.next("fertilizer", "19820518"));
+        assertEquals(1, events.between("irrigation", "19820226", "19821231").size());
+
+        assertEquals(0, events.count("mulch"));
+        assertNull(events.first("mulch"));
+        assertNull(events.firstDate("mulch"));
+        assertEquals(0.0, events.total("mulch", "mlamt"), 0.0);
+        assertTrue(events.between("mulch", "19800101", "19901231").isEmpty());
+    }
+
+    @Test
+    public void matchesLinearScans() {
+        Random random = new Random(11);
+        ArrayList<HashMap<String, String>> list = new ArrayList<HashMap<String, String>>();
+        String[] types = {"irrigation", "fertilizer", "tillage"};
+        for (int i = 0; i < 500; i++) {
+            HashMap<String, String> event = new HashMap<String, String>();
+            event.put("event", types[random.nextInt(types.length)]);
+            event.put("date", DateIndex.fromEpochDay(4383 + random.nextInt(365)));
+            event.put("irval", Integer.toString(random.nextInt(30)));
+            list.add(event);
+        }
+        HashMap<String, String> undated = new HashMap<String, String>();
+        undated.put("event", "irrigation");
+        undated.put("irval", "1000");
+        list.add(undated);
+        Collections.shuffle(list, random);
+        EventIndex events = EventIndex.build(list);
+
+        for (int i = 0; i < 50; i++) {
+            int from = 4383 + random.nextInt(365);
+            int to = from + random.nextInt(60);
+            String start = DateIndex.fromEpochDay(from);
+            String end = DateIndex.fromEpochDay(to);
+            int count = 0;
+            double total = 0.0;
+            for (HashMap<String, String> event : list) {
+                String date = event.get("date");
+                if ("irrigation".equals(event.get("event")) && date != null
+                        && date.compareTo(start) >= 0 && date.compareTo(end) <= 0) {
+                    count++;
+                    total += Double.parseDouble(event.get("irval"));
+                }
+            }
+            List<Map<String, String>> window = events.between("irrigation", start, end);
+            assertEquals(count, window.size());
+            for (int j = 1; j < window.size(); j++) {
+                assertTrue(window.get(j - 1).get("date").compareTo(window.get(j).get("date")) <= 0);
+            }
+            assertEquals(total, events.total("irrigation", "irval", start, end), 1e-9);
+        }
+    }
+}
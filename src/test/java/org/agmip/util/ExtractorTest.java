@@ -0,0 +1,83 @@
+package org.agmip.util;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class ExtractorTest {
+    @Test
+    public void matchesExtract() throws IOException {
+        HashMap<String, Object> experiment = loadExperiment();
+        LinkedHashSet<String> keys = new LinkedHashSet<String>(MapUtil.flattenGlobals(experiment).keySet());
+        keys.add("not_a_variable");
+        Extractor extractor = new Extractor(keys);
+        assertEquals(MapUtil.extract(experiment, keys), extractor.extract(experiment));
+    }
+
+    @Test
+    public void extractsPackagesInParallel() throws Exception {
+        HashMap<String, Object> experiment = loadExperiment();
+        HashMap<String, Object> weather = MapUtil.getRawBucket(experiment, "weather");
+        HashMap<String, Object> soil = MapUtil.getRawBucket(experiment, "soil");
+
+        ArrayList<HashMap<String, Object>> experiments = new ArrayList<HashMap<String, Object>>();
+        ArrayList<HashMap<String, Object>> weathers = new ArrayList<HashMap<String, Object>>();
+        for (int i = 0; i < 3000; i++) {
+            HashMap<String, Object> copy = new HashMap<String, Object>(experiment);
+            copy.remove("weather");
+            copy.remove("soil");
+            copy.put("exname", "EXP" + i);
+            copy.put("wst_id", "W" + (i % 7));
+            experiments.add(copy);
+        }
+        for (int i = 0; i < 7; i++) {
+            HashMap<String, Object> station = new HashMap<String, Object>(weather);
+            station.put("wst_id", "W" + i);
+            station.put("tav", Integer.toString(20 + i));
+            weathers.add(station);
+        }
+        ArrayList<HashMap<String, Object>> soils = new ArrayList<HashMap<String, Object>>();
+        soils.add(soil);
+        HashMap<String, Object> pkg = new HashMap<String, Object>();
+        pkg.put("experiments", experiments);
+        pkg.put("weathers", weathers);
+        pkg.put("soils", soils);
+
+        LinkedHashSet<String> keys = new LinkedHashSet<String>();
+        for (String key : new String[] {"exname", "wst_id", "tav", "soil_id", "salb", "crid", "missing"}) {
+            keys.add(key);
+        }
+        Extractor extractor = new Extractor(keys);
+        ExtractedTable sequential = extractor.extractPackage(pkg);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        ExtractedTable parallel;
+        try {
+            parallel = extractor.extractPackage(pkg, executor);
+        } finally {
+            executor.shutdown();
+        }
+
+        ArrayList<HashMap<String, Object>> flat = MapUtil.flatPack(pkg);
+        assertEquals(3000, sequential.size());
+        for (int i = 0; i < flat.size(); i++) {
+            HashMap<String, String> expected = MapUtil.extract(flat.get(i), keys);
+            assertEquals(expected, sequential.getRow(i));
+            assertEquals(expected, parallel.getRow(i));
+        }
+        assertEquals("25", sequential.get(5, "tav"));
+        assertNull(sequential.get(5, "missing"));
+        assertEquals("EXP2999", sequential.getColumn("exname")[2999]);
+    }
+
+    private HashMap<String, Object> loadExperiment() throws IOException {
+        URL resource = this.getClass().getResource("/simulation_pp.json");
+        return JSONAdapter.fromJSONFile(resource.getPath());
+    }
+}
@@ -1,5 +1,7 @@
 package org.agmip.util;
 
+import java.util.Random;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -21,4 +23,37 @@ public class HelpersTest {
             LOG.error("Caught the exception I was looking for!");
         }
     }
+
+    @Test
+    public void parseDoubleValueMatchesParseDouble() {
+        String[] samples = {"12.345", "12,345", "12,345.67", "12 345 678,90", "0", "", "007", "5.", ".5",
+            "-3.2", "1,234,567", "1.2.3", "0.000001", "123456789012345678", "3.14159265358979323846",
+            "1.0000000000000000000000001", "25.4", "19820101"};
+        for (String sample : samples) {
+            assertEquals(sample, Helpers.parseDouble(sample), Helpers.parseDoubleValue(sample), 0.0);
+        }
+
+        Random random = new Random(42);
+        String alphabet = "0123456789012345678901234567890123456789.,- ";
+        for (int i = 0; i < 100000; i++) {
+            StringBuilder sample = new StringBuilder();
+            int length = 1 + random.nextInt(20);
+            for (int j = 0; j < length; j++) {
+                sample.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            Double expected;
+            try {
+                expected = Helpers.parseDouble(sample.toString());
+            } catch (NumberFormatException ex) {
+                expected = null;
+            }
+            try {
+                double actual = Helpers.parseDoubleValue(sample.toString());
+                assertNotNull(sample.toString(), expected);
+                assertEquals(sample.toString(), expected, actual, 0.0);
+            } catch (NumberFormatException ex) {
+                assertNull(sample.toString(), expected);
+            }
+        }
+    }
 }
@@ -1,4 +1,53 @@
 package org.agmip.util;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import org.agmip.core.types.DatasetSink;
+
 public class JSONAdapterTest {
+    @Test
+    public void fromJSONFile() throws IOException {
+        URL resource = this.getClass().getResource("/simulation_pp.json");
+        HashMap<String, Object> experiment = JSONAdapter.fromJSONFile(resource.getPath());
+        assertEquals("UFGA8201MZ", experiment.get("exname"));
+        assertTrue(experiment.get("weather") instanceof HashMap);
+    }
+
+    @Test
+    public void streamPackage() throws IOException {
+        URL resource = this.getClass().getResource("/simulation_pp.json");
+        HashMap<String, Object> experiment = JSONAdapter.fromJSONFile(resource.getPath());
+        LinkedHashMap<String, Object> pkg = new LinkedHashMap<String, Object>();
+        ArrayList<Object> experiments = new ArrayList<Object>();
+        experiments.add(experiment);
+        experiments.add(experiment);
+        ArrayList<Object> weathers = new ArrayList<Object>();
+        weathers.add(experiment.get("weather"));
+        pkg.put("experiments", experiments);
+        pkg.put("weathers", weathers);
+        pkg.put("crid", "MAZ");
+
+        final ArrayList<String> seen = new ArrayList<String>();
+        HashMap<String, Object> remainder = JSONAdapter.streamJSON(
+            new ByteArrayInputStream(JSONAdapter.toJSON(pkg).getBytes("UTF-8")),
+            new DatasetSink() {
+                public void accept(String content, HashMap<String, Object> entry) {
+                    seen.add(content + ":" + MapUtil.getValueOr(entry, "exname", MapUtil.getValueOr(entry, "wst_id", "")));
+                }
+            });
+
+        assertEquals(3, seen.size());
+        assertEquals("experiments:UFGA8201MZ", seen.get(0));
+        assertEquals("weathers:UFGA", seen.get(2));
+        assertEquals(1, remainder.size());
+        assertEquals("MAZ", remainder.get("crid"));
+    }
 }
@@ -0,0 +1,75 @@
+package org.agmip.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class KeyDictionaryTest {
+    @Test
+    public void defaultIsSeededWithAceVariables() {
+        KeyDictionary keys = KeyDictionary.getDefault();
+        for (String key : new String[] {"tmax", "sllb", "w_date", "exname", "dailyWeather", "hwah"}) {
+            assertTrue(key, keys.contains(key));
+        }
+    }
+
+    @Test
+    public void canonicalizeSharesInstances() {
+        KeyDictionary keys = new KeyDictionary(2);
+        KeyDictionary.Lookup lookup = keys.lookup();
+        String first = lookup.canonicalize(new String("tmax"));
+        assertSame(first, lookup.canonicalize(new String("tmax")));
+        assertSame(first, keys.canonicalize(new String("tmax")));
+        assertEquals("Counts wait for the flush", 0, keys.getHits());
+        lookup.flush();
+        assertEquals(1, keys.getHits());
+        assertEquals(1, keys.getMisses());
+        assertEquals(0.5, keys.getHitRate(), 0.0);
+        lookup.flush();
+        assertEquals(1, keys.getHits());
+
+        keys.canonicalize("tmin");
+        String unknown = new String("srad");
+        assertSame("A full dictionary returns the key itself", unknown, keys.canonicalize(unknown));
+        assertEquals(2, keys.size());
+        assertNull(keys.canonicalize(null));
+    }
+
+    @Test
+    public void decodedKeysAreShared() throws Exception {
+        HashMap<String, Object> station = new HashMap<String, Object>();
+        station.put("wst_id", "W1");
+        station.put("x_tmax_extra", "1");
+        ArrayList<HashMap<String, Object>> weathers = new ArrayList<HashMap<String, Object>>();
+        weathers.add(station);
+        HashMap<String, Object> pkg = new HashMap<String, Object>();
+        pkg.put("weathers", weathers);
+        byte[] data = BinaryAdapter.toBinary(pkg);
+
+        // Each read builds its keys from the bytes; only the dictionary makes them the same instance.
+        Map<String, String> first = ((ArrayList<Map<String, String>>) BinaryAdapter.fromBinary(data).get("weathers")).get(0);
+        Map<String, String> second = ((ArrayList<Map<String, String>>) BinaryAdapter.fromBinary(data).get("weathers")).get(0);
+        assertSame("wst_id", find(first, "wst_id"));
+        assertSame(find(first, "x_tmax_extra"), find(second, "x_tmax_extra"));
+        assertSame("x_tmax_extra", find(second, "x_tmax_extra"));
+    }
+
+    @Test
+    public void canonicalInstancesAreInterned() {
+        KeyDictionary keys = new KeyDictionary(10);
+        assertSame("tmax", keys.canonicalize(new String("tmax")));
+        assertSame("tmax", keys.canonicalize(new String("tmax")));
+    }
+
+    private static String find(Map<String, String> row, String key) {
+        for (String k : row.keySet()) {
+            if (k.equals(key)) {
+                return k;
+            }
+        }
+        return null;
+    }
+}
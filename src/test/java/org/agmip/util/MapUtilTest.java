@@ -1,9 +1,18 @@
 package org.agmip.util;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.io.File;
 import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
 import java.util.Scanner;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.net.URL;
 
 import org.junit.Test;
@@ -12,6 +21,7 @@ import static org.junit.Assert.*;
 
 import static org.agmip.util.MapUtil.*;
 import org.agmip.util.JSONAdapter;
+import org.agmip.core.types.DatasetSink;
 
 public class MapUtilTest {
     @Test
@@ -30,4 +40,276 @@ public class MapUtilTest {
         HashMap<String, Object> uncompressed = decompressAll(toParse);
         System.out.println(uncompressed);
     }
+
+    @Test
+    public void lazyBucket() throws IOException {
+        HashMap<String, Object> experiment = loadExperiment();
+        for (String bucket : new String[] {"weather", "soil", "management"}) {
+            BucketEntry eager = getBucket(experiment, bucket);
+            BucketEntry lazy = getBucket(experiment, bucket, true);
+            assertEquals(eager.getValues(), lazy.getValues());
+
+            ArrayList<HashMap<String, String>> rows = new ArrayList<HashMap<String, String>>();
+            DataListCursor cursor = lazy.cursor();
+            while (cursor.next()) {
+                rows.add(cursor.getRow());
+            }
+            assertEquals(eager.getDataList(), rows);
+            assertEquals(eager.getDataList(), lazy.getDataList());
+
+            ArrayList<HashMap<String, String>> columnarRows = new ArrayList<HashMap<String, String>>();
+            cursor = getColumnarBucket(experiment, bucket).cursor();
+            while (cursor.next()) {
+                columnarRows.add(cursor.getRow());
+            }
+            assertEquals(eager.getDataList(), columnarRows);
+        }
+    }
+
+    @Test
+    public void flatPackAndBundle() {
+        HashMap<String, Object> pkg = new HashMap<String, Object>();
+        ArrayList<HashMap<String, Object>> experiments = new ArrayList<HashMap<String, Object>>();
+        ArrayList<HashMap<String, Object>> weathers = new ArrayList<HashMap<String, Object>>();
+        ArrayList<HashMap<String, Object>> soils = new ArrayList<HashMap<String, Object>>();
+        for (int i = 0; i < 6; i++) {
+            HashMap<String, Object> experiment = new HashMap<String, Object>();
+            experiment.put("exname", "EXP" + i);
+            experiment.put("wst_id", "W" + (i % 3));
+            if (i != 5) {
+                experiment.put("soil_id", "S" + (i % 2));
+            }
+            experiments.add(experiment);
+        }
+        for (int i = 0; i < 3; i++) {
+            HashMap<String, Object> weather = new HashMap<String, Object>();
+            weather.put("wst_id", "W" + i);
+            weathers.add(weather);
+        }
+        HashMap<String, Object> duplicate = new HashMap<String, Object>();
+        duplicate.put("wst_id", "W0");
+        duplicate.put("wst_name", "Duplicate");
+        weathers.add(duplicate);
+        for (int i = 0; i < 2; i++) {
+            HashMap<String, Object> soil = new HashMap<String, Object>();
+            soil.put("soil_id", "S" + i);
+            soils.add(soil);
+        }
+        pkg.put("experiments", experiments);
+        pkg.put("weathers", weathers);
+        pkg.put("soils", soils);
+
+        ArrayList<HashMap<String, Object>> flat = flatPack(pkg);
+        assertEquals(6, flat.size());
+        assertSame(weathers.get(0), flat.get(3).get("weather"));
+        assertSame(soils.get(1), flat.get(3).get("soil"));
+        assertFalse(flat.get(5).containsKey("soil"));
+
+        HashMap<String, ArrayList<HashMap<String, Object>>> bundled = bundle(flat);
+        assertEquals(6, bundled.get("experiments").size());
+        assertEquals(weathers.subList(0, 3), bundled.get("weathers"));
+        assertEquals(soils, bundled.get("soils"));
+        assertFalse(bundled.get("experiments").get(0).containsKey("weather"));
+    }
+
+    @Test
+    public void parallelDecompression() throws IOException, InterruptedException {
+        HashMap<String, Object> experiment = loadExperiment();
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            assertEquals(decompressAll(experiment), decompressAll(experiment, executor));
+
+            HashMap<String, Object> pkg = new HashMap<String, Object>();
+            ArrayList<HashMap<String, Object>> experiments = new ArrayList<HashMap<String, Object>>();
+            for (int i = 0; i < 20; i++) {
+                HashMap<String, Object> copy = new HashMap<String, Object>(experiment);
+                copy.put("exname", "EXP" + i);
+                experiments.add(copy);
+            }
+            ArrayList<HashMap<String, Object>> weathers = new ArrayList<HashMap<String, Object>>();
+            weathers.add(getRawBucket(experiment, "weather"));
+            pkg.put("experiments", experiments);
+            pkg.put("weathers", weathers);
+            pkg.put("version", "1.0");
+
+            HashMap<String, Object> expected = decompressPackage(pkg);
+            assertEquals(expected, decompressPackage(pkg, executor));
+            assertEquals("EXP7", getRawPackageContents(expected, "experiments").get(7).get("exname"));
+            assertEquals(getBucket(experiment, "weather").getDataList(),
+                getRawPackageContents(expected, "weathers").get(0).get("dailyWeather"));
+            assertEquals("1.0", expected.get("version"));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void compressionRoundTrip() throws IOException {
+        Random random = new Random(11);
+        String[] keys = {"w_date", "tmax", "tmin", "rain"};
+        String[] values = {"", "0", "1.5", "25.4"};
+        for (int n = 0; n < 2000; n++) {
+            ArrayList<HashMap<String, String>> rows = new ArrayList<HashMap<String, String>>();
+            int size = random.nextInt(6);
+            for (int i = 0; i < size; i++) {
+                HashMap<String, String> row = new HashMap<String, String>();
+                for (String key : keys) {
+                    if (random.nextInt(3) > 0) {
+                        row.put(key, values[random.nextInt(values.length)]);
+                    }
+                }
+                rows.add(row);
+            }
+            ArrayList<HashMap<String, String>> expanded = decompress(rows);
+            ArrayList<HashMap<String, String>> compressed = compressDataList(expanded);
+            assertEquals(rows.toString(), expanded, decompress(compressed));
+        }
+
+        HashMap<String, Object> experiment = decompressAll(loadExperiment());
+        HashMap<String, Object> compressed = compressAll(experiment);
+        assertEquals(experiment, decompressAll(compressed));
+        assertTrue(JSONAdapter.toJSON(compressed).length() < JSONAdapter.toJSON(experiment).length());
+    }
+
+    private static ArrayList<HashMap<String, String>> decompress(ArrayList<HashMap<String, String>> rows) {
+        HashMap<String, Object> bucket = new HashMap<String, Object>();
+        bucket.put("dailyWeather", rows);
+        return new BucketEntry(bucket).getDataList();
+    }
+
+    @Test
+    public void viewsMatchCopies() throws IOException {
+        HashMap<String, Object> experiment = loadExperiment();
+        GlobalsView globals = getGlobalsView(experiment);
+        HashMap<String, String> flat = flattenGlobals(experiment);
+        assertEquals(flat, globals);
+        for (String key : flat.keySet()) {
+            assertEquals(key, flat.get(key), globals.get(key));
+        }
+        assertNull(globals.get("dailyWeather"));
+
+        for (String bucket : listBucketNames(experiment)) {
+            BucketView view = getBucketView(experiment, bucket);
+            assertEquals(getBucket(experiment, bucket, true).getValues(), view);
+        }
+
+        BucketView weather = getBucketView(experiment, "weather");
+        String wstId = weather.get("wst_id");
+        weather.put("wst_id", "CHANGED");
+        globals.remove("wst_id");
+        assertTrue(weather.isCopied());
+        assertTrue(globals.isCopied());
+        assertEquals("CHANGED", weather.get("wst_id"));
+        assertNull(globals.get("wst_id"));
+        assertEquals(wstId, getRawBucket(experiment, "weather").get("wst_id"));
+        assertEquals(flat, flattenGlobals(experiment));
+    }
+
+    @Test
+    public void streamingFlatPack() throws Exception {
+        HashMap<String, Object> pkg = new HashMap<String, Object>();
+        ArrayList<HashMap<String, Object>> experiments = new ArrayList<HashMap<String, Object>>();
+        ArrayList<HashMap<String, Object>> weathers = new ArrayList<HashMap<String, Object>>();
+        for (int i = 0; i < 500; i++) {
+            HashMap<String, Object> experiment = new HashMap<String, Object>();
+            experiment.put("exname", "EXP" + i);
+            experiment.put("wst_id", "W" + (i % 10));
+            experiments.add(experiment);
+        }
+        for (int i = 0; i < 10; i++) {
+            HashMap<String, Object> weather = new HashMap<String, Object>();
+            weather.put("wst_id", "W" + i);
+            weathers.add(weather);
+        }
+        pkg.put("experiments", experiments);
+        pkg.put("weathers", weathers);
+        ArrayList<HashMap<String, Object>> expected = flatPack(pkg);
+
+        ArrayList<HashMap<String, Object>> streamed = new ArrayList<HashMap<String, Object>>();
+        Iterator<HashMap<String, Object>> iterator = flatPackIterator(pkg);
+        while (iterator.hasNext()) {
+            streamed.add(iterator.next());
+        }
+        assertEquals(expected, streamed);
+
+        final List<HashMap<String, Object>> accepted = Collections.synchronizedList(new ArrayList<HashMap<String, Object>>());
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            int count = flatPack(pkg, new DatasetSink() {
+                public void accept(String content, HashMap<String, Object> entry) {
+                    int n = inFlight.incrementAndGet();
+                    if (n > maxInFlight.get()) {
+                        maxInFlight.set(n);
+                    }
+                    accepted.add(entry);
+                    inFlight.decrementAndGet();
+                }
+            }, executor, 3);
+            assertEquals(500, count);
+            assertTrue(maxInFlight.get() <= 3);
+            assertEquals(new HashSet<HashMap<String, Object>>(expected), new HashSet<HashMap<String, Object>>(accepted));
+
+            try {
+                flatPack(pkg, new DatasetSink() {
+                    public void accept(String content, HashMap<String, Object> entry) throws IOException {
+                        throw new IOException("Writer failed");
+                    }
+                }, executor, 3);
+                fail("The sink failure should be rethrown");
+            } catch (IOException ex) {
+                assertEquals("Writer failed", ex.getMessage());
+            }
+
+            try {
+                flatPack(pkg, new DatasetSink() {
+                    public void accept(String content, HashMap<String, Object> entry) {}
+                }, executor, 0);
+                fail("No experiment could ever be in flight");
+            } catch (IllegalArgumentException ex) {
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void bundleByContent() throws IOException {
+        HashMap<String, Object> weather = getRawBucket(loadExperiment(), "weather");
+        String wstId = (String) weather.get("wst_id");
+        HashMap<String, Object> renamed = new HashMap<String, Object>(weather);
+        renamed.put("wst_id", "COPY");
+        HashMap<String, Object> conflicting = new HashMap<String, Object>(weather);
+        conflicting.put("tav", "99.9");
+
+        assertEquals(fingerprint(weather, "wst_id"), fingerprint(renamed, "wst_id"));
+        assertFalse(fingerprint(weather, "wst_id").equals(fingerprint(renamed, null)));
+        assertFalse(fingerprint(weather, "wst_id").equals(fingerprint(conflicting, "wst_id")));
+
+        ArrayList<HashMap<String, Object>> flat = new ArrayList<HashMap<String, Object>>();
+        for (HashMap<String, Object> w : new HashMap[] {weather, renamed, weather, conflicting}) {
+            HashMap<String, Object> experiment = new HashMap<String, Object>();
+            experiment.put("wst_id", w.get("wst_id"));
+            experiment.put("weather", w);
+            flat.add(experiment);
+        }
+
+        BundleReport report = new BundleReport();
+        HashMap<String, ArrayList<HashMap<String, Object>>> bundled = bundle(flat, report);
+        assertEquals(1, bundled.get("weathers").size());
+        assertSame(weather, bundled.get("weathers").get(0));
+        for (HashMap<String, Object> experiment : bundled.get("experiments")) {
+            assertEquals(wstId, experiment.get("wst_id"));
+            assertFalse(experiment.containsKey("weather"));
+        }
+        assertEquals(wstId, report.getDuplicates("weathers").get("COPY"));
+        assertTrue(report.getConflicts("weathers").contains(wstId));
+        assertTrue(report.getConflicts("soils").isEmpty());
+    }
+
+    private HashMap<String, Object> loadExperiment() throws IOException {
+        URL resource = this.getClass().getResource("/simulation_pp.json");
+        return JSONAdapter.fromJSONFile(resource.getPath());
+    }
 }
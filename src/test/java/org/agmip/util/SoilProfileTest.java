@@ -0,0 +1,87 @@
+package org.agmip.util;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class SoilProfileTest {
+    @Test
+    public void readsCompressedSoil() throws IOException {
+        URL resource = this.getClass().getResource("/simulation_pp.json");
+        HashMap<String, Object> experiment = JSONAdapter.fromJSONFile(resource.getPath());
+        SoilProfile profile = SoilProfile.forSoil(MapUtil.getRawBucket(experiment, "soil"), true);
+
+        assertEquals(8, profile.size());
+        assertEquals(180.0, profile.getDepth(), 0.0);
+        assertEquals(0, profile.layerAt(0.0));
+        assertEquals(0, profile.layerAt(5.0));
+        assertEquals(1, profile.layerAt(5.5));
+        assertEquals(-1, profile.layerAt(181.0));
+        assertEquals(0.096, profile.getValue("sldul", 3.0), 0.0);
+        assertEquals(0.258, profile.getValue("sldul", 170.0), 0.0);
+        // An empty value drops slcec from the second layer on.
+        assertEquals(20.0, profile.getValue("slcec", 1.0), 0.0);
+        assertTrue(Double.isNaN(profile.getValue("slcec", 10.0)));
+
+        double[] out = new double[3];
+        profile.relayer("sldul", new double[] {10, 200, 250}, out);
+        assertEquals((5 * 0.096 + 5 * 0.086) / 10, out[0], 1e-12);
+        assertEquals(0.258, out[2], 1e-12);
+        profile.relayer("slcec", new double[] {10, 20, 30}, out);
+        assertEquals(20.0, out[0], 0.0);
+        assertTrue(Double.isNaN(out[1]));
+
+        // Decompressed layers must not inherit slcec from the top layer.
+        HashMap<String, Object> soil = MapUtil.getRawBucket(MapUtil.decompressAll(experiment), "soil");
+        SoilProfile decompressed = SoilProfile.forSoil(soil, false);
+        assertEquals(8, decompressed.size());
+        assertEquals(20.0, decompressed.getValue("slcec", 1.0), 0.0);
+        assertTrue(Double.isNaN(decompressed.getValue("slcec", 10.0)));
+        assertEquals(0.258, decompressed.getValue("sldul", 170.0), 0.0);
+    }
+
+    @Test
+    public void matchesFineGridIntegration() {
+        Random random = new Random(5);
+        for (int n = 0; n < 20; n++) {
+            ArrayList<HashMap<String, String>> layers = new ArrayList<HashMap<String, String>>();
+            int bottom = 0;
+            for (int i = 0; i < 1 + random.nextInt(10); i++) {
+                bottom += 1 + random.nextInt(40);
+                HashMap<String, String> layer = new HashMap<String, String>();
+                layer.put("icbl", Integer.toString(bottom));
+                layer.put("ich2o", Integer.toString(random.nextInt(100)));
+                layers.add(layer);
+            }
+            Collections.shuffle(layers, random);
+            SoilProfile profile = SoilProfile.build(layers, "icbl");
+
+            double[] grid = new double[1 + random.nextInt(8)];
+            int depth = 0;
+            for (int i = 0; i < grid.length; i++) {
+                depth += 1 + random.nextInt(30);
+                grid[i] = depth;
+            }
+            double[] out = new double[grid.length];
+            profile.relayer("ich2o", grid, out);
+
+            int top = 0;
+            for (int i = 0; i < grid.length; i++) {
+                // Average the value of every centimetre of the target layer.
+                double sum = 0.0;
+                for (int cm = top; cm < grid[i]; cm++) {
+                    int layer = profile.layerAt(cm + 0.5);
+                    sum += profile.column("ich2o")[layer < 0 ? profile.size() - 1 : layer];
+                }
+                assertEquals(sum / (grid[i] - top), out[i], 1e-9);
+                top = (int) grid[i];
+            }
+        }
+    }
+}
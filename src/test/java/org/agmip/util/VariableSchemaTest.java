@@ -0,0 +1,53 @@
+package org.agmip.util;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.List;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class VariableSchemaTest {
+    @Test
+    public void typesFromLookup() {
+        VariableSchema schema = VariableSchema.getDefault();
+        assertEquals(VariableSchema.Type.NUMERIC, schema.getType("tmax"));
+        assertEquals(VariableSchema.Type.NUMERIC, schema.getType("sllb"));
+        assertEquals(VariableSchema.Type.DATE, schema.getType("w_date"));
+        assertEquals(VariableSchema.Type.DATE, schema.getType("pdate"));
+        assertEquals(VariableSchema.Type.CODE, schema.getType("crid"));
+        assertEquals(VariableSchema.Type.TEXT, schema.getType("exname"));
+        assertEquals(VariableSchema.Type.TEXT, schema.getType("not_an_ace_variable"));
+    }
+
+    @Test
+    public void bindsExperiment() throws IOException {
+        URL resource = this.getClass().getResource("/simulation_pp.json");
+        HashMap<String, Object> raw = MapUtil.decompressAll(JSONAdapter.fromJSONFile(resource.getPath()));
+        TypedRecord experiment = VariableSchema.getDefault().bind(raw);
+
+        assertEquals("UFGA8201MZ", experiment.getString("exname"));
+        assertTrue(Double.isNaN(experiment.getDouble("exname")));
+        assertEquals(29.63, experiment.getDouble("fl_lat"), 0.0);
+        assertEquals(-1.0, experiment.getDouble("missing", -1.0), 0.0);
+        assertNull(experiment.getType("missing"));
+        assertTrue(experiment.getChildren().contains("weather"));
+
+        TypedRecord weather = experiment.getRecord("weather");
+        List<TypedRecord> daily = weather.getRecords("dailyWeather");
+        List<HashMap<String, String>> rows = MapUtil.getBucket(raw, "weather").getDataList();
+        assertEquals(rows.size(), daily.size());
+        for (int i = 0; i < rows.size(); i++) {
+            assertEquals(Double.parseDouble(rows.get(i).get("tmax")), daily.get(i).getDouble("tmax"), 0.0);
+            assertEquals(DateIndex.toEpochDay(rows.get(i).get("w_date")), daily.get(i).getDate("w_date"));
+        }
+        assertEquals(Integer.MIN_VALUE, daily.get(0).getDate("tmax"));
+
+        List<TypedRecord> events = experiment.getRecord("management").getRecords("events");
+        assertEquals(VariableSchema.Type.CODE, events.get(0).getType("crid"));
+        assertEquals(DateIndex.toEpochDay("19820226"), events.get(0).getDate("date"));
+        assertTrue(weather.getRecords("nothing").isEmpty());
+        assertNull(experiment.getRecord("nothing"));
+    }
+}
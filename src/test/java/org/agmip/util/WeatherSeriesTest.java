@@ -0,0 +1,145 @@
+package org.agmip.util;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class WeatherSeriesTest {
+    @Test
+    public void matchesNaiveAggregations() throws IOException {
+        MapUtil.BucketEntry weather = MapUtil.getBucket(loadExperiment(), "weather");
+        WeatherSeries series = WeatherSeries.of(weather);
+        assertEquals(730, series.size());
+
+        List<WeatherSeries.Summary> months = series.monthly("tmax");
+        assertEquals(24, months.size());
+        for (WeatherSeries.Summary month : months) {
+            double sum = 0.0;
+            double max = Double.NEGATIVE_INFINITY;
+            int count = 0;
+            for (HashMap<String, String> row : weather.getDataList()) {
+                if (row.get("w_date").startsWith(month.getLabel())) {
+                    double tmax = Double.parseDouble(row.get("tmax"));
+                    sum += tmax;
+                    max = Math.max(max, tmax);
+                    count++;
+                }
+            }
+            assertEquals(month.getLabel(), count, month.getCount());
+            assertEquals(0, month.getMissing());
+            assertEquals(sum, month.getSum(), 1e-9);
+            assertEquals(max, month.getMax(), 0.0);
+            assertEquals(sum / count, month.getMean(), 1e-9);
+        }
+
+        double gdd = 0.0;
+        double rain = 0.0;
+        for (HashMap<String, String> row : weather.getDataList()) {
+            String date = row.get("w_date");
+            if (date.compareTo("19820401") >= 0 && date.compareTo("19820930") <= 0) {
+                double high = Math.min(Double.parseDouble(row.get("tmax")), 30.0);
+                double low = Math.max(Double.parseDouble(row.get("tmin")), 10.0);
+                gdd += Math.max(0.0, (high + low) / 2.0 - 10.0);
+                rain += Double.parseDouble(row.get("rain"));
+            }
+        }
+        assertEquals(gdd, series.growingDegreeDays("19820401", "19820930", 10.0, 30.0), 1e-9);
+        WeatherSeries.Summary season = series.summarize("rain", "19820401", "19820930");
+        assertEquals(183, season.getCount());
+        assertEquals(rain, season.getSum(), 1e-9);
+        assertEquals(730, series.summarize("tmin").getCount());
+    }
+
+    @Test
+    public void countsMissingValues() {
+        ArrayList<HashMap<String, String>> rows = new ArrayList<HashMap<String, String>>();
+        for (int day = 0; day < 60; day++) {
+            // Leave out every tenth day and every other rain value.
+            if (day % 10 == 9) {
+                continue;
+            }
+            HashMap<String, String> row = new HashMap<String, String>();
+            row.put("w_date", DateIndex.fromEpochDay(4383 + day));
+            row.put("tmax", "20");
+            row.put("tmin", "10");
+            // An empty value drops the variable when the bucket is decompressed.
+            row.put("rain", (day % 2 == 0) ? "1.5" : "");
+            rows.add(row);
+        }
+        HashMap<String, Object> raw = station("TEST", rows);
+        WeatherSeries series = WeatherSeries.of(raw, true);
+
+        WeatherSeries.Summary january = series.summarize("rain", "19811201", "19820131");
+        assertEquals(16, january.getCount());
+        assertEquals(31 - 16, january.getMissing());
+        assertEquals(24.0, january.getSum(), 0.0);
+        assertEquals(1.5, january.getMin(), 0.0);
+
+        WeatherSeries.Summary empty = series.summarize("srad", "19820101", "19820110");
+        assertEquals(0, empty.getCount());
+        assertEquals(10, empty.getMissing());
+        assertTrue(Double.isNaN(empty.getMean()));
+        assertTrue(Double.isNaN(empty.getMax()));
+
+        assertEquals(54 * 5.0, series.growingDegreeDays("19820101", "19820301", 10.0, 30.0), 1e-9);
+        assertEquals(2, series.monthly("tmax").size());
+
+        // A decompressed station must not inherit the first rain value.
+        ArrayList<HashMap<String, Object>> weathers = new ArrayList<HashMap<String, Object>>();
+        weathers.add(raw);
+        HashMap<String, Object> pkg = new HashMap<String, Object>();
+        pkg.put("weathers", weathers);
+        HashMap<String, Object> decompressed = MapUtil.getRawPackageContents(MapUtil.decompressPackage(pkg), "weathers").get(0);
+        january = WeatherSeries.of(decompressed, false).summarize("rain", "19811201", "19820131");
+        assertEquals(16, january.getCount());
+        assertEquals(24.0, january.getSum(), 0.0);
+    }
+
+    @Test
+    public void aggregatesStationsConcurrently() throws Exception {
+        ArrayList<HashMap<String, Object>> stations = new ArrayList<HashMap<String, Object>>();
+        for (int s = 0; s < 20; s++) {
+            ArrayList<HashMap<String, String>> rows = new ArrayList<HashMap<String, String>>();
+            for (int day = 0; day < 365; day++) {
+                HashMap<String, String> row = new HashMap<String, String>();
+                row.put("w_date", DateIndex.fromEpochDay(4383 + day));
+                row.put("rain", Integer.toString(s));
+                rows.add(row);
+            }
+            stations.add(station("ST" + s, rows));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Double> totals = WeatherSeries.aggregateAll(stations, true, new WeatherSeries.Aggregation<Double>() {
+                public Double apply(WeatherSeries series) {
+                    return series.summarize("rain", "19820101", "19821231").getSum();
+                }
+            }, executor);
+            assertEquals(20, totals.size());
+            for (int s = 0; s < 20; s++) {
+                assertEquals(365.0 * s, totals.get(s), 0.0);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private HashMap<String, Object> station(String id, ArrayList<HashMap<String, String>> rows) {
+        HashMap<String, Object> station = new HashMap<String, Object>();
+        station.put("wst_id", id);
+        station.put("dailyWeather", rows);
+        return station;
+    }
+
+    private HashMap<String, Object> loadExperiment() throws IOException {
+        URL resource = this.getClass().getResource("/simulation_pp.json");
+        return JSONAdapter.fromJSONFile(resource.getPath());
+    }
+}